@@ -0,0 +1,188 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal JMH-style micro-benchmark runner.
+ *
+ * Each benchmark gets timed warmup iterations followed by timed measurement
+ * iterations on the calling thread. Throughput is reported in ops/s and
+ * allocation in bytes/op, read from the per-thread allocation counter.
+ * Results can be saved as CSV and compared against a saved baseline.
+ */
+public class BenchmarkHarness {
+
+    /**
+     * One benchmarked operation. Return a value derived from the work so the
+     * JIT cannot drop it; an int keeps boxing out of the allocation numbers.
+     */
+    public interface Operation {
+        int run() throws Exception;
+    }
+
+    public static class Result {
+        final String name;
+        final double opsPerSecond;
+        final double errorPercent;
+        final double bytesPerOp;
+
+        Result(String name, double opsPerSecond, double errorPercent, double bytesPerOp) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.errorPercent = errorPercent;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private final Map<String, Operation> benchmarks = new LinkedHashMap<>();
+    private int warmupIterations = 3;
+    private int measureIterations = 5;
+    private long iterationMillis = 500;
+
+    // Values returned by operations end up here so they escape
+    private volatile int sink;
+
+    public void add(String name, Operation op) {
+        benchmarks.put(name, op);
+    }
+
+    public void setWarmupIterations(int n) { warmupIterations = n; }
+    public void setMeasureIterations(int n) { measureIterations = n; }
+    public void setIterationMillis(long ms) { iterationMillis = ms; }
+
+    // ========= RUNNING =========
+
+    /** Runs every benchmark whose name contains the filter (null = all). */
+    public List<Result> runAll(String filter) throws Exception {
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-40s %16s %10s %14s%n", "Benchmark", "ops/s", "error", "bytes/op");
+        for (Map.Entry<String, Operation> e : benchmarks.entrySet()) {
+            if (filter != null && !e.getKey().contains(filter)) continue;
+            Result r = run(e.getKey(), e.getValue());
+            results.add(r);
+            System.out.printf("%-40s %16.1f %9.1f%% %14.1f%n",
+                    r.name, r.opsPerSecond, r.errorPercent, r.bytesPerOp);
+        }
+        return results;
+    }
+
+    private Result run(String name, Operation op) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op, null);
+        }
+
+        double[] throughput = new double[measureIterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < measureIterations; i++) {
+            long[] opsAndBytes = new long[2];
+            throughput[i] = iteration(op, opsAndBytes);
+            totalOps += opsAndBytes[0];
+            totalBytes += opsAndBytes[1];
+        }
+
+        double mean = 0;
+        for (double t : throughput) mean += t;
+        mean /= throughput.length;
+        double variance = 0;
+        for (double t : throughput) variance += (t - mean) * (t - mean);
+        double stdev = throughput.length > 1 ? Math.sqrt(variance / (throughput.length - 1)) : 0;
+
+        double bytesPerOp = totalBytes < 0 ? Double.NaN : (double) totalBytes / totalOps;
+        return new Result(name, mean, mean == 0 ? 0 : stdev * 100 / mean, bytesPerOp);
+    }
+
+    /** Calls the operation until the iteration time is up. Returns ops/s. */
+    private double iteration(Operation op, long[] opsAndBytes) throws Exception {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000L;
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long ops = 0;
+        int acc = 0;
+        long now;
+        do {
+            acc += op.run();
+            ops++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long bytesAfter = allocatedBytes();
+        sink = acc;
+
+        if (opsAndBytes != null) {
+            opsAndBytes[0] = ops;
+            opsAndBytes[1] = (bytesBefore < 0 || bytesAfter < 0) ? -1 : bytesAfter - bytesBefore;
+        }
+        return ops * 1e9 / (now - start);
+    }
+
+    /** Bytes allocated so far by this thread, or -1 if the JVM can't tell us. */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // ========= BASELINES =========
+
+    public static void save(List<Result> results, String filename) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
+            out.println("benchmark,ops_per_second,error_percent,bytes_per_op");
+            for (Result r : results) {
+                out.printf(Locale.ROOT, "%s,%.3f,%.3f,%.3f%n",
+                        r.name, r.opsPerSecond, r.errorPercent, r.bytesPerOp);
+            }
+        }
+    }
+
+    /**
+     * Prints the change against a saved baseline and flags regressions:
+     * throughput down or allocation up by more than the threshold percent.
+     * Returns the number of regressions found.
+     */
+    public static int compare(List<Result> results, String baselineFile, double thresholdPercent)
+            throws IOException {
+        Map<String, double[]> baseline = new LinkedHashMap<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(baselineFile))) {
+            String line = br.readLine(); // header
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length < 4) continue;
+                baseline.put(parts[0], new double[]{
+                        Double.parseDouble(parts[1]), Double.parseDouble(parts[3])});
+            }
+        }
+
+        int regressions = 0;
+        System.out.printf("%n%-40s %12s %12s%n", "Benchmark vs baseline", "ops/s", "bytes/op");
+        for (Result r : results) {
+            double[] base = baseline.get(r.name);
+            if (base == null) continue;
+            double opsDelta = percentChange(base[0], r.opsPerSecond);
+            // Under a byte per op is measurement noise (the counter itself allocates)
+            double bytesDelta = Math.abs(r.bytesPerOp - base[1]) < 1.0
+                    ? 0 : percentChange(base[1], r.bytesPerOp);
+            boolean regressed = opsDelta < -thresholdPercent || bytesDelta > thresholdPercent;
+            if (regressed) regressions++;
+            System.out.printf("%-40s %+11.1f%% %+11.1f%%%s%n",
+                    r.name, opsDelta, bytesDelta, regressed ? "  REGRESSION" : "");
+        }
+        return regressions;
+    }
+
+    private static double percentChange(double before, double after) {
+        if (Double.isNaN(before) || Double.isNaN(after)) return 0;
+        if (before == 0) return after == 0 ? 0 : Double.POSITIVE_INFINITY;
+        return (after - before) * 100 / before;
+    }
+}
@@ -0,0 +1,366 @@
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Benchmarks for the game's hot paths: map generation, data loading,
+ * combat damage resolution and encounter sampling.
+ *
+ * Run from the project root (data files are read relative to it):
+ *   java -cp out GameBenchmarks [filter] [--save file.csv] [--compare baseline.csv]
+ *
+ * --compare exits with status 1 when any benchmark regressed by more than 10%.
+ */
+public class GameBenchmarks {
+
+    private static final double REGRESSION_THRESHOLD_PERCENT = 10.0;
+
+    public static void main(String[] args) throws Exception {
+        String filter = null;
+        String saveFile = null;
+        String compareFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--save")) saveFile = args[++i];
+            else if (args[i].equals("--compare")) compareFile = args[++i];
+            else filter = args[i];
+        }
+
+        BenchmarkHarness harness = new BenchmarkHarness();
+        registerMapBenchmarks(harness);
+        registerLoaderBenchmarks(harness);
+        registerCombatBenchmarks(harness);
+        registerEncounterBenchmarks(harness);
+        registerMarketBenchmarks(harness);
+        registerSaveBenchmarks(harness);
+        registerMetricsBenchmarks(harness);
+
+        List<BenchmarkHarness.Result> results = harness.runAll(filter);
+
+        if (saveFile != null) {
+            BenchmarkHarness.save(results, saveFile);
+        }
+        if (compareFile != null) {
+            int regressions = BenchmarkHarness.compare(results, compareFile, REGRESSION_THRESHOLD_PERCENT);
+            if (regressions > 0) System.exit(1);
+        }
+    }
+
+    // ========= MAP GENERATION =========
+
+    private static void registerMapBenchmarks(BenchmarkHarness harness) {
+        for (final int size : new int[]{5, 10, 15, 100, 1000}) {
+            // Chunks are generated lazily, so touch every tile to build the whole map
+            harness.add("GameMap.new " + size + "x" + size, () -> {
+                GameMap map = new GameMap(size, size);
+                int markets = 0;
+                for (int r = 0; r < size; r++) {
+                    for (int c = 0; c < size; c++) {
+                        if (map.getType(r, c) == TileType.MARKET) markets++;
+                    }
+                }
+                return markets;
+            });
+        }
+    }
+
+    // ========= DATA LOADING =========
+
+    private static void registerLoaderBenchmarks(BenchmarkHarness harness) throws Exception {
+        harness.add("FileLoader.loadWarriors", () -> {
+            List<Hero> list = new ArrayList<>();
+            FileLoader.loadWarriors("Warriors.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadSorcerers", () -> {
+            List<Hero> list = new ArrayList<>();
+            FileLoader.loadSorcerers("Sorcerers.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadPaladins", () -> {
+            List<Hero> list = new ArrayList<>();
+            FileLoader.loadPaladins("Paladins.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadDragons", () -> {
+            List<Monster> list = new ArrayList<>();
+            FileLoader.loadDragons("Dragons.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadExoskeletons", () -> {
+            List<Monster> list = new ArrayList<>();
+            FileLoader.loadExoskeletons("Exoskeletons.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadSpiritMonsters", () -> {
+            List<Monster> list = new ArrayList<>();
+            FileLoader.loadSpiritMonsters("Spirits.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadWeapons", () -> {
+            List<Weapon> list = new ArrayList<>();
+            FileLoader.loadWeapons("Weaponry.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadArmors", () -> {
+            List<Armor> list = new ArrayList<>();
+            FileLoader.loadArmors("Armory.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadPotions", () -> {
+            List<Potion> list = new ArrayList<>();
+            FileLoader.loadPotions("Potions.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadFireSpells", () -> {
+            List<Spell> list = new ArrayList<>();
+            FileLoader.loadFireSpells("FireSpells.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadIceSpells", () -> {
+            List<Spell> list = new ArrayList<>();
+            FileLoader.loadIceSpells("IceSpells.txt", list);
+            return list.size();
+        });
+        harness.add("FileLoader.loadLightningSpells", () -> {
+            List<Spell> list = new ArrayList<>();
+            FileLoader.loadLightningSpells("LightningSpells.txt", list);
+            return list.size();
+        });
+
+        // Whole catalog: all twelve text files vs. mapping a snapshot of them
+        harness.add("Catalog.loadText", () -> Catalog.loadText().getHeroes().size());
+        final File snapshot = File.createTempFile("catalog", ".bin");
+        snapshot.deleteOnExit();
+        CatalogSnapshot.write(Catalog.loadText(), snapshot.getPath());
+        harness.add("CatalogSnapshot.open", () -> CatalogSnapshot.open(snapshot.getPath()).getHeroes().size());
+        harness.add("CatalogSnapshot.open+decode all", () -> {
+            Catalog catalog = CatalogSnapshot.open(snapshot.getPath());
+            int n = 0;
+            for (Hero h : catalog.getHeroes()) n += h.getLevel();
+            for (Weapon w : catalog.getWeapons()) n += w.getCost();
+            for (Spell sp : catalog.getSpells()) n += sp.getCost();
+            return n;
+        });
+    }
+
+    // ========= COMBAT =========
+
+    private static void registerCombatBenchmarks(BenchmarkHarness harness) throws Exception {
+        List<Hero> heroes = new ArrayList<>();
+        FileLoader.loadWarriors("Warriors.txt", heroes);
+        List<Monster> monsters = new ArrayList<>();
+        FileLoader.loadDragons("Dragons.txt", monsters);
+        List<Weapon> weapons = new ArrayList<>();
+        FileLoader.loadWeapons("Weaponry.txt", weapons);
+        List<Spell> spells = new ArrayList<>();
+        FileLoader.loadFireSpells("FireSpells.txt", spells);
+
+        final Hero hero = heroes.get(0).copy();
+        hero.equipWeapon(weapons.get(0));
+        final Monster target = monsters.get(0).copy();
+        final Spell spell = spells.get(0);
+        final int targetHp = target.getHp();
+        final int targetDefense = target.getDefense();
+        final int heroMana = hero.getMana();
+
+        List<Hero> party = new ArrayList<>();
+        party.add(hero);
+        List<Monster> enemies = new ArrayList<>();
+        enemies.add(target);
+        final BattleEngine engine = new BattleEngine(party, enemies, new SplittableRandom(1));
+
+        harness.add("BattleEngine.attack", () -> {
+            target.setHp(targetHp);
+            return engine.attack(hero, target);
+        });
+        harness.add("BattleEngine.castSpell", () -> {
+            // Spells are single-use and debuff the target, so restore both each time
+            target.setHp(targetHp);
+            target.setDefense(targetDefense);
+            hero.setMana(heroMana);
+            hero.getInventory().add(spell);
+            return engine.castSpell(hero, spell, target);
+        });
+        harness.add("BattleEngine.scaleMonsterDamage", () -> engine.scaleMonsterDamage(300, hero));
+
+        List<Potion> potions = new ArrayList<>();
+        FileLoader.loadPotions("Potions.txt", potions);
+        final Potion ambrosia = potions.get(potions.size() - 1); // every attribute
+        final Hero drinker = heroes.get(2).copy();
+        harness.add("Potion.applyTo all attributes", () -> {
+            ambrosia.applyTo(drinker);
+            return drinker.getHp();
+        });
+
+        // A simulated hero hauling lots of gear: the controller only walks the spells
+        final Hero hauler = heroes.get(1).copy();
+        for (int i = 0; i < 1000; i++) {
+            hauler.getInventory().add(new Weapon("Weapon_" + i, 100, 1, 100 + i, 1));
+            hauler.getInventory().add(new Armor("Armor_" + i, 100, 1, 100 + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            hauler.getInventory().add(spells.get(i % spells.size()));
+        }
+        final SimpleHeroController controller = new SimpleHeroController();
+        harness.add("SimpleHeroController.chooseAction 2k items",
+                () -> controller.chooseAction(hauler, engine).getKind().ordinal());
+
+        // A whole 3v3 battle, with and without the battle log
+        final List<Hero> fighters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) fighters.add(heroes.get(i).copy());
+        final List<Monster> foes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) foes.add(monsters.get(i).copy());
+        final BattleLog log = new BattleLog();
+        final long[] seed = {0};
+        harness.add("BattleEngine.fight 3v3", () -> {
+            List<Hero> party3 = freshCopies(fighters);
+            return new BattleEngine(party3, freshMonsters(foes), new SplittableRandom(++seed[0]))
+                    .fight(controller) ? 1 : 0;
+        });
+        harness.add("BattleEngine.fight 3v3 recorded", () -> {
+            List<Hero> party3 = freshCopies(fighters);
+            new BattleEngine(party3, freshMonsters(foes), ++seed[0], log).fight(controller);
+            return log.size();
+        });
+
+        // The same 3v3 battle, 256 at a time in the struct-of-arrays kernel
+        final BatchBattle batch = new BatchBattle(256, 3, 3);
+        harness.add("BatchBattle.run 256 x 3v3", () -> {
+            for (int lane = 0; lane < batch.getLanes(); lane++) {
+                batch.load(lane, fighters, foes, ++seed[0]);
+            }
+            batch.run();
+            return batch.getRounds(0);
+        });
+
+        // The same battle played through the console Battle, always attacking the first target:
+        // once printed into a buffered stream that drops the bytes, once into the null sink
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 1000; i++) script.append("1\n");
+        final byte[] input = script.toString().getBytes(StandardCharsets.UTF_8);
+        final OutputStream discard = new OutputStream() {
+            @Override public void write(int b) {}
+            @Override public void write(byte[] b, int off, int len) {}
+        };
+        harness.add("Battle.fight 3v3 buffered output", () -> {
+            GameIO io = new GameIO(new ByteArrayInputStream(input), discard);
+            return new Battle(io, freshCopies(fighters), freshMonsters(foes), ++seed[0], null).fight() ? 1 : 0;
+        });
+        harness.add("Battle.fight 3v3 null output", () -> {
+            GameIO io = GameIO.headless(new ByteArrayInputStream(input));
+            return new Battle(io, freshCopies(fighters), freshMonsters(foes), ++seed[0], null).fight() ? 1 : 0;
+        });
+    }
+
+    private static List<Hero> freshCopies(List<Hero> heroes) {
+        List<Hero> copies = new ArrayList<>(heroes.size());
+        for (Hero h : heroes) copies.add(h.copy());
+        return copies;
+    }
+
+    private static List<Monster> freshMonsters(List<Monster> monsters) {
+        List<Monster> copies = new ArrayList<>(monsters.size());
+        for (Monster m : monsters) copies.add(m.copy());
+        return copies;
+    }
+
+    // ========= ENCOUNTERS =========
+
+    private static void registerEncounterBenchmarks(BenchmarkHarness harness) throws Exception {
+        List<Monster> dragons = new ArrayList<>();
+        List<Monster> exoskeletons = new ArrayList<>();
+        List<Monster> spirits = new ArrayList<>();
+        FileLoader.loadDragons("Dragons.txt", dragons);
+        FileLoader.loadExoskeletons("Exoskeletons.txt", exoskeletons);
+        FileLoader.loadSpiritMonsters("Spirits.txt", spirits);
+        final EncounterTable encounters = new EncounterTable(dragons, exoskeletons, spirits);
+        final SplittableRandom random = new SplittableRandom(1);
+
+        for (final int level : new int[]{1, 5, 20}) {
+            harness.add("EncounterTable.randomMonsterOfLevel L" + level,
+                    () -> encounters.randomMonsterOfLevel(level, random).getLevel());
+        }
+    }
+
+    // ========= MARKET =========
+
+    private static void registerMarketBenchmarks(BenchmarkHarness harness) {
+        // A procedurally expanded catalog, far larger than the data files
+        SplittableRandom random = new SplittableRandom(1);
+        List<Weapon> weapons = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            weapons.add(new Weapon("Weapon_" + i, random.nextInt(5000), 1 + random.nextInt(12),
+                    random.nextInt(2000), 1 + random.nextInt(2)));
+        }
+        final MarketCatalog<Weapon> market = new MarketCatalog<>(weapons);
+        final int[] query = {0};
+
+        harness.add("MarketCatalog.usableAndAffordable 50k", () -> {
+            int q = query[0]++;
+            return market.usableAndAffordable(1 + q % 12, q % 5000).size();
+        });
+        harness.add("MarketCatalog.new 50k", () -> new MarketCatalog<>(weapons).all().size());
+    }
+
+    // ========= SAVING =========
+
+    private static void registerSaveBenchmarks(BenchmarkHarness harness) throws Exception {
+        List<Hero> heroes = new ArrayList<>();
+        FileLoader.loadWarriors("Warriors.txt", heroes);
+        List<Potion> potions = new ArrayList<>();
+        FileLoader.loadPotions("Potions.txt", potions);
+
+        final List<Hero> party = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Hero h = heroes.get(i).copy();
+            for (Potion p : potions) h.getInventory().add(p);
+            party.add(h);
+        }
+        final GameRandom random = new GameRandom(1);
+        final GameMap map = GameMap.unbounded(random.mapSeed());
+        File file = File.createTempFile("savegame", ".bin");
+        file.deleteOnExit();
+        new File(file.getPath() + ".tmp").deleteOnExit();
+        final SaveGame save = new SaveGame(file.getPath());
+        save.save(map, random, 0, 0, party);
+
+        harness.add("SaveGame.save unchanged", () -> {
+            save.save(map, random, 0, 0, party);
+            return (int) save.fileSize();
+        });
+        // Journal appends, with a compaction every few hundred saves
+        harness.add("SaveGame.save one hero changed", () -> {
+            Hero h = party.get(0);
+            h.setGold(h.getGold() + 1);
+            save.save(map, random, 0, 0, party);
+            return (int) save.fileSize();
+        });
+    }
+
+    // ========= SERVER METRICS =========
+
+    private static void registerMetricsBenchmarks(BenchmarkHarness harness) {
+        final ServerMetrics metrics = new ServerMetrics();
+        final SessionMetrics session = metrics.openSession(1);
+        final long[] nanos = {0};
+
+        // The cost every timed command pays on a session thread
+        harness.add("SessionMetrics.record", () -> {
+            nanos[0] = (nanos[0] + 7919) & 0xFFFFFFF;
+            session.record(Command.MOVE, nanos[0]);
+            return (int) nanos[0];
+        });
+
+        // What a move pays for the JMX gameplay counters
+        final GameMetrics game = GameMetrics.get();
+        harness.add("GameMetrics.step", () -> {
+            nanos[0]++;
+            game.step((nanos[0] & 3) == 0);
+            return (int) nanos[0];
+        });
+    }
+}
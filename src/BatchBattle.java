@@ -0,0 +1,347 @@
+import java.util.List;
+
+/**
+ * Many independent headless battles at once, kept as columns of primitives
+ * instead of Hero and Monster objects.
+ *
+ * Each column holds one stat for every battle ("lane"), slot by slot, so a
+ * step such as "hero 1 attacks" runs as one loop over the lanes reading
+ * neighbouring ints. Lanes advance in lockstep, a round at a time, over a
+ * list of the lanes still fighting, which is compacted after every round so
+ * long battles don't make the short ones pay. Nothing is allocated while
+ * running.
+ *
+ * The rules are those of {@link BattleEngine#fight} with a
+ * {@link SimpleHeroController}, for parties without spells or potions, so the
+ * heroes always attack the weakest monster. Each lane carries its own
+ * SplittableRandom state, stepped exactly like SplittableRandom(seed), so a lane
+ * ends with the same result, rounds and hero HP as
+ * {@code new BattleEngine(heroes, monsters, seed, null).fight(new SimpleHeroController())}.
+ */
+public class BatchBattle {
+
+    // SplittableRandom's constants, to step each lane's generator in place
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private final int lanes;
+    private final int heroSlots;
+    private final int monsterSlots;
+
+    // Heroes, indexed [slot * lanes + lane]
+    private final int[] heroHp;
+    private final int[] heroLevel;
+    private final int[] heroExp;
+    private final int[] heroAttack;     // weapon damage plus level bonus, before defense
+    private final int[] heroReduction;  // armor plus defense bonus
+    private final double[] heroDodge;
+    private final boolean[] heroFainted;
+
+    // Monsters, indexed [slot * lanes + lane]
+    private final int[] monsterHp;
+    private final int[] monsterDamage;
+    private final double[] monsterDefenseFactor;
+    private final double[] monsterDodge;
+
+    // Per lane
+    private final int[] heroCount;
+    private final int[] monsterCount;
+    private final int[] heroesStanding;
+    private final int[] monstersAlive;
+    private final long[] seed;
+    private final int[] rounds;
+    private final boolean[] loaded;
+    private final int[] active;         // lanes still fighting, in order
+    private int activeCount;
+    private final boolean[] heroesWon;
+    private final int[] targets;        // heroes the monsters may hit this turn, [slot * lanes + lane]
+    private final int[] targetCount;
+
+    public BatchBattle(int lanes, int heroSlots, int monsterSlots) {
+        this.lanes = lanes;
+        this.heroSlots = heroSlots;
+        this.monsterSlots = monsterSlots;
+
+        heroHp = new int[heroSlots * lanes];
+        heroLevel = new int[heroSlots * lanes];
+        heroExp = new int[heroSlots * lanes];
+        heroAttack = new int[heroSlots * lanes];
+        heroReduction = new int[heroSlots * lanes];
+        heroDodge = new double[heroSlots * lanes];
+        heroFainted = new boolean[heroSlots * lanes];
+        targets = new int[heroSlots * lanes];
+
+        monsterHp = new int[monsterSlots * lanes];
+        monsterDamage = new int[monsterSlots * lanes];
+        monsterDefenseFactor = new double[monsterSlots * lanes];
+        monsterDodge = new double[monsterSlots * lanes];
+
+        heroCount = new int[lanes];
+        monsterCount = new int[lanes];
+        heroesStanding = new int[lanes];
+        monstersAlive = new int[lanes];
+        seed = new long[lanes];
+        rounds = new int[lanes];
+        loaded = new boolean[lanes];
+        active = new int[lanes];
+        heroesWon = new boolean[lanes];
+        targetCount = new int[lanes];
+    }
+
+    public int getLanes() { return lanes; }
+
+    /** True if the batch rules cover these heroes: no spells or potions to decide about. */
+    public static boolean supports(List<Hero> heroes) {
+        for (Hero h : heroes) {
+            if (h.getInventory().first(Spell.class) != null) return false;
+            if (h.getInventory().first(Potion.class) != null) return false;
+        }
+        return true;
+    }
+
+    // ==================== LOADING ====================
+
+    /**
+     * Sets up one lane's battle from the given heroes and monsters, which are
+     * only read. Lanes not loaded since the last {@link #run()} stay idle.
+     */
+    public void load(int lane, List<Hero> heroes, List<Monster> monsters, long battleSeed) {
+        if (heroes.size() > heroSlots || monsters.size() > monsterSlots) {
+            throw new IllegalArgumentException("Battle of " + heroes.size() + " heroes and "
+                    + monsters.size() + " monsters does not fit the batch");
+        }
+        if (!supports(heroes)) {
+            throw new IllegalArgumentException("Heroes with spells or potions need BattleEngine");
+        }
+
+        int standing = 0;
+        for (int h = 0; h < heroes.size(); h++) {
+            Hero hero = heroes.get(h);
+            int i = h * lanes + lane;
+            heroHp[i] = hero.getHp();
+            heroLevel[i] = hero.getLevel();
+            heroExp[i] = hero.getExperience();
+            heroAttack[i] = attackBase(hero);
+            heroReduction[i] = hero.damageReduction();
+            heroDodge[i] = hero.dodgeChance();
+            heroFainted[i] = hero.isFainted();
+            if (!hero.isFainted()) standing++;
+        }
+        int alive = 0;
+        for (int m = 0; m < monsters.size(); m++) {
+            Monster monster = monsters.get(m);
+            int i = m * lanes + lane;
+            monsterHp[i] = monster.getHp();
+            monsterDamage[i] = monster.getBaseDamage();
+            monsterDefenseFactor[i] = 100.0 / (100.0 + monster.getDefense());
+            monsterDodge[i] = monster.dodgeChance();
+            if (!monster.isDead()) alive++;
+        }
+
+        heroCount[lane] = heroes.size();
+        monsterCount[lane] = monsters.size();
+        heroesStanding[lane] = standing;
+        monstersAlive[lane] = alive;
+        seed[lane] = battleSeed;
+        rounds[lane] = 0;
+        heroesWon[lane] = false;
+        loaded[lane] = true;
+    }
+
+    /** BattleEngine.attack's damage before the target's defense. */
+    private static int attackBase(Hero h) {
+        int base = h.weaponDamage() + 5 * h.getLevel();
+        return base <= 0 ? 15 + 5 * h.getLevel() : base;
+    }
+
+    // ==================== RESULTS ====================
+
+    public boolean heroesWon(int lane) { return heroesWon[lane]; }
+    public int getRounds(int lane) { return rounds[lane]; }
+    public int heroCount(int lane) { return heroCount[lane]; }
+
+    /** A hero's HP after the battle, rewards and revival included. */
+    public int heroHp(int lane, int hero) { return heroHp[hero * lanes + lane]; }
+
+    // ==================== BATTLE LOOP ====================
+
+    /** Fights every loaded lane to the end. */
+    public void run() {
+        activeCount = 0;
+        for (int lane = 0; lane < lanes; lane++) {
+            if (!loaded[lane]) continue;
+            loaded[lane] = false;
+            active[activeCount++] = lane;
+        }
+        retireFinished(); // over before it started, as in BattleEngine.fight
+
+        while (activeCount > 0) {
+            for (int k = 0; k < activeCount; k++) {
+                rounds[active[k]]++;
+            }
+            for (int h = 0; h < heroSlots; h++) {
+                heroesAttack(h);
+            }
+            monstersTarget();
+            for (int m = 0; m < monsterSlots; m++) {
+                monstersAttack(m);
+            }
+            for (int h = 0; h < heroSlots; h++) {
+                regen(h);
+            }
+            retireFinished();
+        }
+    }
+
+    /** Finishes the lanes whose battle is decided and drops them from the active list. */
+    private void retireFinished() {
+        int kept = 0;
+        for (int k = 0; k < activeCount; k++) {
+            int lane = active[k];
+            if (heroesStanding[lane] == 0 || monstersAlive[lane] == 0) {
+                finish(lane);
+            } else {
+                active[kept++] = lane;
+            }
+        }
+        activeCount = kept;
+    }
+
+    /** Hero slot h attacks the weakest living monster in every lane where it can. */
+    private void heroesAttack(int h) {
+        for (int k = 0; k < activeCount; k++) {
+            int lane = active[k];
+            int i = h * lanes + lane;
+            if (h >= heroCount[lane] || monstersAlive[lane] == 0
+                    || heroFainted[i] || heroHp[i] <= 0) {
+                continue;
+            }
+
+            // Weakest monster, first one on ties
+            int target = -1;
+            int lowest = Integer.MAX_VALUE;
+            for (int m = 0; m < monsterCount[lane]; m++) {
+                int hp = monsterHp[m * lanes + lane];
+                if (hp > 0 && hp < lowest) {
+                    lowest = hp;
+                    target = m * lanes + lane;
+                }
+            }
+
+            if (nextDouble(lane) < monsterDodge[target]) continue;
+            int effective = Math.max(5, (int) Math.round(heroAttack[i] * monsterDefenseFactor[target]));
+            int hp = Math.max(0, monsterHp[target] - effective);
+            monsterHp[target] = hp;
+            if (hp == 0) monstersAlive[lane]--;
+        }
+    }
+
+    /** Snapshots which heroes the monsters may target, like BattleEngine.aliveHeroes. */
+    private void monstersTarget() {
+        for (int k = 0; k < activeCount; k++) {
+            int lane = active[k];
+            if (monstersAlive[lane] == 0) continue;
+            int n = 0;
+            for (int h = 0; h < heroCount[lane]; h++) {
+                if (!heroFainted[h * lanes + lane]) targets[n++ * lanes + lane] = h;
+            }
+            targetCount[lane] = n;
+        }
+    }
+
+    /** Monster slot m hits a random standing hero in every lane where it lives. */
+    private void monstersAttack(int m) {
+        for (int k = 0; k < activeCount; k++) {
+            int lane = active[k];
+            if (monstersAlive[lane] == 0 || targetCount[lane] == 0
+                    || m >= monsterCount[lane] || monsterHp[m * lanes + lane] <= 0) {
+                continue;
+            }
+
+            int t = targets[nextInt(lane, targetCount[lane]) * lanes + lane] * lanes + lane;
+            if (nextDouble(lane) < heroDodge[t]) continue;
+            int effective = monsterDamage[m * lanes + lane] - heroReduction[t];
+            if (effective <= 0) continue;
+
+            // BattleEngine.scaleMonsterDamage
+            double factor = 0.10 + nextDouble(lane) * 0.10;
+            int scaled = (int) Math.round(effective * factor);
+            int cap = Math.max(1, heroLevel[t] * 100 / 5);
+            scaled = Math.max(2, Math.min(scaled, cap));
+
+            int hp = Math.max(0, heroHp[t] - scaled);
+            heroHp[t] = hp;
+            if (hp == 0 && !heroFainted[t]) {
+                heroFainted[t] = true;
+                heroesStanding[lane]--;
+            }
+        }
+    }
+
+    private void regen(int h) {
+        for (int k = 0; k < activeCount; k++) {
+            int lane = active[k];
+            int i = h * lanes + lane;
+            if (monstersAlive[lane] > 0 && h < heroCount[lane] && !heroFainted[i]) {
+                heroHp[i] = (int) (heroHp[i] * 1.1);
+            }
+        }
+    }
+
+    /** Ends a lane, with BattleEngine.handleVictory's revival and level-ups on a win. */
+    private void finish(int lane) {
+        if (monstersAlive[lane] > 0) return;
+
+        heroesWon[lane] = true;
+        int exp = monsterCount[lane] * 2;
+        for (int h = 0; h < heroCount[lane]; h++) {
+            int i = h * lanes + lane;
+            if (heroFainted[i]) {
+                heroHp[i] = heroLevel[i] * 50;
+                heroFainted[i] = false;
+            } else if (heroHp[i] > 0) {
+                heroExp[i] += exp;
+                while (heroExp[i] >= heroLevel[i] * 10) {
+                    heroLevel[i]++;
+                    heroHp[i] = heroLevel[i] * 100;
+                }
+            }
+        }
+    }
+
+    // ==================== PER-LANE RANDOM ====================
+
+    private long nextSeed(int lane) {
+        return seed[lane] += GOLDEN_GAMMA;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /** SplittableRandom.nextDouble() */
+    private double nextDouble(int lane) {
+        return (mix64(nextSeed(lane)) >>> 11) * DOUBLE_UNIT;
+    }
+
+    /** SplittableRandom.nextInt(bound) */
+    private int nextInt(int lane, int bound) {
+        int r = mix32(nextSeed(lane));
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            r &= m;
+        } else {
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed(lane)) >>> 1) {
+                // rejected, draw again
+            }
+        }
+        return r;
+    }
+}
@@ -2,89 +2,87 @@ import java.util.*;
 
 public class Battle {
 
-    private final Scanner scanner;
+    private final GameIO io;
     private final List<Hero> heroes;
     private final List<Monster> monsters;
-    private final Random random = new Random();
+    private final BattleEngine engine;
+    private final BattleRenderer renderer;
+    private HeroController autoPlayer; // created on first use of Auto
 
-    // ANSI colors for console
-    private static final String RED   = "\u001B[31m";
-    private static final String GREEN = "\u001B[32m";
-    private static final String RESET = "\u001B[0m";
+    // Reused every round so the battle loop doesn't allocate
+    private final StringBuilder line = new StringBuilder();
+    private final List<Monster> alive = new ArrayList<>();
 
-    // ========= COLORED MESSAGE HELPERS =========
-    private void printPositive(String msg) {
-        System.out.println(GREEN + msg + RESET);
+    // Thinking time of the Auto option
+    private static final long AUTO_PLAY_MILLIS = 250;
+
+    // ========= MESSAGE HELPERS =========
+
+    /** Prompt feedback; what happens in the battle is printed by the renderer. */
+    private void printNegative(CharSequence msg) {
+        renderer.printNegative(msg);
     }
 
-    private void printNegative(String msg) {
-        System.out.println(RED + msg + RESET);
+    /** The shared line buffer, emptied. */
+    private StringBuilder line() {
+        line.setLength(0);
+        return line;
     }
 
     // ==================== MAIN BATTLE LOOP ====================
 
-    public Battle(Scanner scanner, List<Hero> heroes, List<Monster> monsters) {
-        this.scanner = scanner;
+    public Battle(GameIO io, List<Hero> heroes, List<Monster> monsters) {
+        this(io, heroes, monsters, new SplittableRandom().nextLong(), null);
+    }
+
+    /** A battle with a fixed seed that records itself into the log (null for none). */
+    public Battle(GameIO io, List<Hero> heroes, List<Monster> monsters, long seed, BattleLog log) {
+        this.io = io;
         this.heroes = heroes;
         this.monsters = monsters;
+        this.engine = new BattleEngine(heroes, monsters, seed, log);
+        this.renderer = new BattleRenderer(io);
+        engine.getEvents().subscribe(renderer);
+        engine.getEvents().subscribe(GameMetrics.get());
     }
 
     public boolean fight() {
-        System.out.println("\n=== Battle Start ===");
+        io.println("\n=== Battle Start ===");
 
-        while (!allHeroesFainted() && !allMonstersDead()) {
+        while (!engine.allHeroesFainted() && !engine.allMonstersDead()) {
+            engine.beginRound();
             printStatus();
             heroTurn();
-            if (allMonstersDead()) break;
+            if (engine.allMonstersDead()) break;
             monsterTurn();
-            endOfRoundRegen();
+            engine.endOfRoundRegen();
         }
 
-        if (allMonstersDead()) {
-            printPositive("Heroes won the battle!");
-            handleVictory();
-            return true;
-        } else {
-            printNegative("Heroes were defeated...");
-            return false;
+        if (engine.allMonstersDead()) {
+            engine.handleVictory();
         }
-    }
-
-    private boolean allHeroesFainted() {
-        return heroes.stream().allMatch(Hero::isFainted);
-    }
-
-    private boolean allMonstersDead() {
-        return monsters.stream().allMatch(Monster::isDead);
+        return engine.finish();
     }
 
     // ==================== STATUS DISPLAY ====================
 
     private void printStatus() {
-        System.out.println("\n--- Heroes ---");
+        io.println("\n--- Heroes ---");
         for (int i = 0; i < heroes.size(); i++) {
             Hero h = heroes.get(i);
-            System.out.printf(
-                    "%d) %s (HP:%d, MP:%d%s)%n",
-                    i + 1,
-                    h.getName(),
-                    h.getHp(),
-                    h.getMana(),
-                    h.isFainted() ? ", Fainted:true" : ""
-            );
+            io.println(line().append(i + 1).append(") ").append(h.getName())
+                    .append(" (HP:").append(h.getHp())
+                    .append(", MP:").append(h.getMana())
+                    .append(h.isFainted() ? ", Fainted:true)" : ")"));
         }
 
-        System.out.println("--- Monsters ---");
+        io.println("--- Monsters ---");
         for (int i = 0; i < monsters.size(); i++) {
             Monster m = monsters.get(i);
-            System.out.printf(
-                    "%d) %s (HP:%d, Dmg:%d, Def:%d)%n",
-                    i + 1,
-                    m.getName(),
-                    m.getHp(),
-                    m.getBaseDamage(),
-                    m.getDefense()
-            );
+            io.println(line().append(i + 1).append(") ").append(m.getName())
+                    .append(" (HP:").append(m.getHp())
+                    .append(", Dmg:").append(m.getBaseDamage())
+                    .append(", Def:").append(m.getDefense()).append(')'));
         }
     }
 
@@ -95,21 +93,25 @@ public class Battle {
      * Turn is consumed only when a real action happens:
      *  - valid attack / spell / potion
      *  - or skip (0)
+     *  - or auto (5), which always acts
      * Equip gear does NOT consume a turn.
      */
     private void heroTurn() {
-        for (Hero h : heroes) {
+        for (int i = 0; i < heroes.size(); i++) {
+            Hero h = heroes.get(i);
             if (h.isFainted() || h.isDead()) continue;
+            if (engine.allMonstersDead()) return; // nothing left to fight
 
             boolean done = false;
             while (!done) {
-                System.out.println("\nAction for " + h.getName());
-                System.out.println("1) Attack");
-                System.out.println("2) Cast Spell");
-                System.out.println("3) Use Potion");
-                System.out.println("4) Equip Gear (Weapon/Armor)");
-                System.out.println("0) Skip");
-                System.out.print("Choice: ");
+                io.println(line().append("\nAction for ").append(h.getName()));
+                io.println("1) Attack");
+                io.println("2) Cast Spell");
+                io.println("3) Use Potion");
+                io.println("4) Equip Gear (Weapon/Armor)");
+                io.println("5) Auto (let the AI choose)");
+                io.println("0) Skip");
+                io.print("Choice: ");
 
                 int c = readInt();
                 switch (c) {
@@ -125,8 +127,14 @@ public class Battle {
                     case 4:
                         heroEquipGear(h); // no turn consumption
                         break;
+                    case 5:
+                        heroAuto(h);
+                        done = true;
+                        break;
                     case 0:
-                        done = true; // skip
+                        engine.skip(h);
+                        io.command(Command.BATTLE_SKIP);
+                        done = true;
                         break;
                     default:
                         printNegative("Invalid option. Please choose again.");
@@ -149,50 +157,19 @@ public class Battle {
             return false;
         }
 
-        // Check dodge first
-        if (random.nextDouble() < target.dodgeChance()) {
-            printNegative(target.getName() + " dodged the attack!");
-            return true; // turn is still consumed
-        }
-
-        // Base damage from hero/weapon + level scaling
-        int weaponBase = h.weaponDamage();
-        int levelBonus = 5 * h.getLevel();      // extra damage per level
-        int base = weaponBase + levelBonus;
-
-        // Safety fallback if weaponDamage is tiny or 0
-        if (base <= 0) {
-            base = 15 + 5 * h.getLevel();
-        }
-
-        // Defense now reduces damage proportionally instead of fully subtracting
-        // Example: def = 200 → factor ≈ 100 / 300 ≈ 0.33
-        double defenseFactor = 100.0 / (100.0 + target.getDefense());
-        int effective = (int) Math.round(base * defenseFactor);
-
-        // Ensure a meaningful hit if the attack lands
-        if (effective < 5) {
-            effective = 5;
-        }
-
-        target.setHp(target.getHp() - effective);
-
-        printPositive(String.format(
-                "%s attacked %s for %d damage!",
-                h.getName(), target.getName(), effective
-        ));
+        attack(h, target);
+        return true; // turn is consumed even on a dodge
+    }
 
-        return true;
+    private void attack(Hero h, Monster target) {
+        engine.attack(h, target);
+        io.command(Command.BATTLE_ATTACK);
     }
 
     // ==================== HERO SPELL CAST ====================
 
     private boolean heroCastSpell(Hero h) {
-        // Gather spells
-        List<Spell> spells = new ArrayList<>();
-        for (Item item : h.getInventory()) {
-            if (item instanceof Spell) spells.add((Spell) item);
-        }
+        List<Spell> spells = h.getInventory().listOf(Spell.class);
 
         if (spells.isEmpty()) {
             printNegative("No spells in inventory.");
@@ -200,11 +177,11 @@ public class Battle {
         }
 
         while (true) {
-            System.out.println("Spells:");
+            io.println("Spells:");
             for (int i = 0; i < spells.size(); i++) {
-                System.out.printf("%d) %s%n", i + 1, spells.get(i));
+                io.printf("%d) %s%n", i + 1, h.getInventory().describe(spells.get(i)));
             }
-            System.out.print("Choose spell (0 to cancel): ");
+            io.print("Choose spell (0 to cancel): ");
 
             int c = readInt();
             if (c == 0) {
@@ -229,58 +206,21 @@ public class Battle {
                 return false;
             }
 
-            // Spend mana
-            h.setMana(h.getMana() - s.getManaCost());
-
-            // Dodge check
-            if (random.nextDouble() < target.dodgeChance()) {
-                printNegative(target.getName() + " dodged the spell!");
-                h.getInventory().remove(s); // consume spell
-                return true;
-            }
-
-            int base = h.spellDamage(s);
-            if (base <= 0) base = 10 + h.getLevel() * 3;
-
-            int raw = base - target.getDefense();
-            int effective = Math.max(1, raw); // still okay for spells
-
-            target.setHp(target.getHp() - effective);
-
-            printPositive(String.format(
-                    "%s cast %s on %s for %d damage!",
-                    h.getName(), s.getName(), target.getName(), effective
-            ));
-
-            // Apply spell-specific debuffs (good for hero)
-            switch (s.getType()) {
-                case FIRE:
-                    target.setDefense((int) (target.getDefense() * 0.9));
-                    printPositive(target.getName() + "'s defense was reduced!");
-                    break;
-                case ICE:
-                    target.setBaseDamage((int) (target.getBaseDamage() * 0.9));
-                    printPositive(target.getName() + "'s damage was reduced!");
-                    break;
-                case LIGHTNING:
-                    target.reduceDodgeChance();
-                    printPositive(target.getName() + "'s dodge chance was reduced!");
-                    break;
-            }
-
-            // Single-use spell
-            h.getInventory().remove(s);
+            castSpell(h, s, target);
             return true;
         }
     }
 
+    private void castSpell(Hero h, Spell s, Monster target) {
+        // Spends mana and consumes the spell even on a dodge
+        engine.castSpell(h, s, target);
+        io.command(Command.BATTLE_SPELL);
+    }
+
     // ==================== HERO POTION USE ====================
 
     private boolean heroUsePotion(Hero h) {
-        List<Potion> pots = new ArrayList<>();
-        for (Item item : h.getInventory()) {
-            if (item instanceof Potion) pots.add((Potion) item);
-        }
+        List<Potion> pots = h.getInventory().listOf(Potion.class);
 
         if (pots.isEmpty()) {
             printNegative("No potions in inventory.");
@@ -288,12 +228,12 @@ public class Battle {
         }
 
         while (true) {
-            System.out.println("Potions:");
+            io.println("Potions:");
             for (int i = 0; i < pots.size(); i++) {
-                System.out.printf("%d) %s%n", i + 1, pots.get(i));
+                io.printf("%d) %s%n", i + 1, h.getInventory().describe(pots.get(i)));
             }
 
-            System.out.print("Choose potion (0 to cancel): ");
+            io.print("Choose potion (0 to cancel): ");
             int c = readInt();
 
             if (c == 0) {
@@ -305,24 +245,35 @@ public class Battle {
                 continue;
             }
 
-            Potion p = pots.get(c - 1);
-            p.applyTo(h);
-            h.getInventory().remove(p);
-
-            printPositive(h.getName() + " used potion " + p.getName());
+            usePotion(h, pots.get(c - 1));
             return true;
         }
     }
 
+    private void usePotion(Hero h, Potion p) {
+        engine.usePotion(h, p);
+        io.command(Command.BATTLE_POTION);
+    }
+
+    // ==================== HERO AUTO PLAY ====================
+
+    /** Lets {@link MctsHeroController} pick and play the hero's action. */
+    private void heroAuto(Hero h) {
+        if (autoPlayer == null) autoPlayer = new MctsHeroController(AUTO_PLAY_MILLIS);
+        HeroAction action = autoPlayer.chooseAction(h, engine);
+        if (!engine.perform(h, action)) engine.skip(h);
+        io.command(Command.BATTLE_AUTO);
+    }
+
     // ==================== HERO EQUIP GEAR ====================
 
     private void heroEquipGear(Hero h) {
         while (true) {
-            System.out.println("\nEquip Gear for " + h.getName());
-            System.out.println("1) Equip Weapon");
-            System.out.println("2) Equip Armor");
-            System.out.println("0) Back");
-            System.out.print("Choice: ");
+            io.println("\nEquip Gear for " + h.getName());
+            io.println("1) Equip Weapon");
+            io.println("2) Equip Armor");
+            io.println("0) Back");
+            io.print("Choice: ");
 
             int c = readInt();
             switch (c) {
@@ -341,22 +292,19 @@ public class Battle {
     }
 
     private void heroEquipWeapon(Hero h) {
-        List<Weapon> ws = new ArrayList<>();
-        for (Item item : h.getInventory()) {
-            if (item instanceof Weapon) ws.add((Weapon) item);
-        }
+        List<Weapon> ws = h.getInventory().listOf(Weapon.class);
 
         if (ws.isEmpty()) {
             printNegative("No weapons in inventory.");
             return;
         }
 
-        System.out.println("Weapons:");
+        io.println("Weapons:");
         for (int i = 0; i < ws.size(); i++) {
-            System.out.printf("%d) %s%n", i + 1, ws.get(i));
+            io.printf("%d) %s%n", i + 1, h.getInventory().describe(ws.get(i)));
         }
 
-        System.out.print("Choose weapon (0 to cancel): ");
+        io.print("Choose weapon (0 to cancel): ");
         int c = readInt();
         if (c == 0) return;
         if (c < 1 || c > ws.size()) {
@@ -365,27 +313,24 @@ public class Battle {
         }
 
         Weapon w = ws.get(c - 1);
-        h.equipWeapon(w);
-        printPositive(h.getName() + " equipped " + w.getName());
+        engine.equipWeapon(h, w);
+        io.command(Command.BATTLE_EQUIP);
     }
 
     private void heroEquipArmor(Hero h) {
-        List<Armor> as = new ArrayList<>();
-        for (Item item : h.getInventory()) {
-            if (item instanceof Armor) as.add((Armor) item);
-        }
+        List<Armor> as = h.getInventory().listOf(Armor.class);
 
         if (as.isEmpty()) {
             printNegative("No armor in inventory.");
             return;
         }
 
-        System.out.println("Armor:");
+        io.println("Armor:");
         for (int i = 0; i < as.size(); i++) {
-            System.out.printf("%d) %s%n", i + 1, as.get(i));
+            io.printf("%d) %s%n", i + 1, h.getInventory().describe(as.get(i)));
         }
 
-        System.out.print("Choose armor (0 to cancel): ");
+        io.print("Choose armor (0 to cancel): ");
         int c = readInt();
         if (c == 0) return;
         if (c < 1 || c > as.size()) {
@@ -394,8 +339,8 @@ public class Battle {
         }
 
         Armor a = as.get(c - 1);
-        h.equipArmor(a);
-        printPositive(h.getName() + " equipped " + a.getName());
+        engine.equipArmor(h, a);
+        io.command(Command.BATTLE_EQUIP);
     }
 
     // ==================== TARGET SELECTION ====================
@@ -408,8 +353,9 @@ public class Battle {
      */
     private Monster chooseMonster(boolean allowCancel) {
         while (true) {
-            List<Monster> alive = new ArrayList<>();
-            for (Monster m : monsters) {
+            alive.clear();
+            for (int i = 0; i < monsters.size(); i++) {
+                Monster m = monsters.get(i);
                 if (!m.isDead()) alive.add(m);
             }
 
@@ -420,22 +366,23 @@ public class Battle {
 
             if (alive.size() == 1) {
                 Monster only = alive.get(0);
-                System.out.println("Only one target: "
+                io.println("Only one target: "
                         + only.getName()
                         + " (HP:" + only.getHp() + ") → auto-targeted.");
                 return only;
             }
 
-            System.out.println("Choose target:");
+            io.println("Choose target:");
             for (int i = 0; i < alive.size(); i++) {
                 Monster m = alive.get(i);
-                System.out.printf("%d) %s (HP:%d)%n", i + 1, m.getName(), m.getHp());
+                io.println(line().append(i + 1).append(") ").append(m.getName())
+                        .append(" (HP:").append(m.getHp()).append(')'));
             }
 
             if (allowCancel) {
-                System.out.print("Choice (0 to cancel): ");
+                io.print("Choice (0 to cancel): ");
             } else {
-                System.out.print("Choice: ");
+                io.print("Choice: ");
             }
 
             int c = readInt();
@@ -452,142 +399,19 @@ public class Battle {
     // ==================== MONSTER TURN ====================
 
     private void monsterTurn() {
-        System.out.println("\n--- Monsters' Turn ---");
-
-        List<Hero> aliveHeroes = new ArrayList<>();
-        for (Hero h : heroes) {
-            if (!h.isFainted()) aliveHeroes.add(h);
-        }
-        if (aliveHeroes.isEmpty()) return;
-
-        for (Monster m : monsters) {
-            if (m.isDead()) continue;
-
-            Hero target = aliveHeroes.get(random.nextInt(aliveHeroes.size()));
-
-            // Dodge
-            if (random.nextDouble() < target.dodgeChance()) {
-                printPositive(target.getName()
-                        + " dodged the attack from " + m.getName() + "!");
-                continue;
-            }
-
-            int dmg = m.getBaseDamage();
-            int reduction = (target.getArmor() != null)
-                    ? target.getArmor().getDamageReduction()
-                    : 0;
-
-            int effective = Math.max(0, dmg - reduction);
-            if (effective <= 0) {
-                printPositive(String.format(
-                        "%s attacked %s but dealt no damage!",
-                        m.getName(), target.getName()
-                ));
-                continue;
-            }
-
-            int scaled = scaleMonsterDamage(effective, target);
-
-            target.setHp(target.getHp() - scaled);
-            // *** CHANGED: removed "(scaled from %d)" from the message ***
-            printNegative(String.format(
-                    "%s attacked %s for %d damage!",
-                    m.getName(), target.getName(), scaled
-            ));
-
-            if (target.getHp() <= 0) {
-                target.setFainted(true);
-                printNegative(target.getName() + " fainted!");
-            }
-        }
-    }
-
-    /**
-     * Scale monster damage so fights are fairer:
-     *  - Monsters do about 10%–20% of their effective damage.
-     *  - Capped to at most ~20% of hero's max HP.
-     *  - Still at least 2 damage so they don't feel harmless.
-     */
-    private int scaleMonsterDamage(int baseDamage, Hero target) {
-        // Softer factor: 0.10–0.20 instead of 0.15–0.30
-        double factor = 0.10 + random.nextDouble() * 0.10; // 0.10–0.20
-        int scaled = (int) Math.round(baseDamage * factor);
-
-        // Hero max HP based on level
-        int heroMaxHp = target.getLevel() * 100;
-
-        // Cap at ~20% of hero's max HP
-        int cap = Math.max(1, heroMaxHp / 5); // 1/5 = 20%
-        scaled = Math.min(scaled, cap);
-
-        // Monsters should still chip away, but not chunk too hard
-        return Math.max(2, scaled); // at least 2 damage
-    }
-
-    // ==================== END OF ROUND & VICTORY ====================
-
-    private void endOfRoundRegen() {
-        for (Hero h : heroes) {
-            if (!h.isFainted()) {
-                h.setHp((int) (h.getHp() * 1.1));
-                h.setMana((int) (h.getMana() * 1.1));
-            }
-        }
-    }
-
-    private void handleVictory() {
-        int numMonsters = monsters.size();
-        int expPerHero = numMonsters * 2;
-
-        int maxMonsterLevel = monsters.stream()
-                .mapToInt(Monster::getLevel)
-                .max()
-                .orElse(1);
-
-        int totalGold = maxMonsterLevel * 100 * numMonsters;
-
-        List<Hero> activeHeroes = new ArrayList<>();
-        for (Hero h : heroes) {
-            if (h.isFainted() && !h.isDead()) {
-                // fainted heroes get revived later, but are not "active"
-            } else if (!h.isDead()) {
-                activeHeroes.add(h);
-            }
-        }
-
-        int goldPerHero = activeHeroes.isEmpty()
-                ? 0
-                : totalGold / activeHeroes.size();
-
-        for (Hero h : heroes) {
-            if (h.isFainted()) {
-                h.setHp(h.getLevel() * 50);
-                h.setMana(h.getMana() / 2);
-                h.setFainted(false);
-                printNegative(h.getName()
-                        + " was revived but gained no gold or exp.");
-            } else if (!h.isDead()) {
-                h.gainExpAndGold(expPerHero, goldPerHero);
-                printPositive(String.format(
-                        "%s gained %d exp and %d gold.",
-                        h.getName(), expPerHero, goldPerHero
-                ));
-            } else {
-                printNegative(h.getName()
-                        + " is dead and gains no rewards.");
-            }
-        }
+        io.println("\n--- Monsters' Turn ---");
+        engine.monsterTurn();
     }
 
     // ==================== INPUT HELPERS ====================
 
     private int readInt() {
         while (true) {
+            String line = io.readLine();
             try {
-                String line = scanner.nextLine().trim();
                 return Integer.parseInt(line);
-            } catch (Exception e) {
-                System.out.print("Enter a number: ");
+            } catch (NumberFormatException e) {
+                io.print("Enter a number: ");
             }
         }
     }
@@ -0,0 +1,408 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Battle rules without any console I/O.
+ *
+ * The console {@link Battle} drives this engine one action at a time and prints
+ * the outcomes; headless runs call {@link #fight(HeroController)} and let a
+ * controller make every hero decision. Everything that happens is published
+ * on the battle's {@link BattleEvents}, which is all the console, a log or a
+ * statistics collector sees.
+ */
+public class BattleEngine {
+
+    /** Returned by attack/spell/monster-attack resolution when the target dodged. */
+    public static final int DODGED = -1;
+
+    private final List<Hero> heroes;
+    private final List<Monster> monsters;
+    private final SplittableRandom random;
+    private final BattleEvents events = new BattleEvents();
+    private final List<Hero> targets; // reused by aliveHeroes()
+    private final HeroAction[] attackActions; // attackAction(), made on first use
+    private int rounds = 0;
+
+    public BattleEngine(List<Hero> heroes, List<Monster> monsters, SplittableRandom random) {
+        this.heroes = heroes;
+        this.monsters = monsters;
+        this.random = random;
+        this.targets = new ArrayList<>(heroes.size());
+        this.attackActions = new HeroAction[monsters.size()];
+    }
+
+    /**
+     * A battle that records itself into the log (null for none). The seed and
+     * the starting state are written first, so the log alone can replay it.
+     */
+    public BattleEngine(List<Hero> heroes, List<Monster> monsters, long seed, BattleLog log) {
+        this.heroes = heroes;
+        this.monsters = monsters;
+        this.random = new SplittableRandom(seed);
+        this.targets = new ArrayList<>(heroes.size());
+        this.attackActions = new HeroAction[monsters.size()];
+        if (log != null) {
+            log.begin(seed, heroes, monsters);
+            events.subscribe(log);
+        }
+    }
+
+    public List<Hero> getHeroes() { return heroes; }
+    public List<Monster> getMonsters() { return monsters; }
+    public int getRounds() { return rounds; }
+
+    /** Where this battle publishes its events; subscribe before fighting to see them all. */
+    public BattleEvents getEvents() { return events; }
+
+    /**
+     * An attack on the monster at the given index. The battle keeps one per
+     * monster, so controllers that attack every round don't allocate.
+     */
+    public HeroAction attackAction(int monster) {
+        HeroAction action = attackActions[monster];
+        if (action == null) {
+            action = HeroAction.attack(monsters.get(monster));
+            attackActions[monster] = action;
+        }
+        return action;
+    }
+
+    // ==================== HEADLESS BATTLE LOOP ====================
+
+    /**
+     * Runs the whole battle with the given controller deciding hero actions.
+     * Returns true if the heroes won.
+     */
+    public boolean fight(HeroController controller) {
+        while (!allHeroesFainted() && !allMonstersDead()) {
+            beginRound();
+            heroTurn(controller);
+            if (allMonstersDead()) break;
+            monsterTurn();
+            endOfRoundRegen();
+        }
+
+        if (allMonstersDead()) {
+            handleVictory();
+        }
+        return finish();
+    }
+
+    public void beginRound() {
+        rounds++;
+        events.round(rounds);
+    }
+
+    /** Ends the battle (after any victory rewards). Returns true if the heroes won. */
+    public boolean finish() {
+        boolean heroesWon = allMonstersDead();
+        events.end(heroesWon);
+        return heroesWon;
+    }
+
+    // Checked several times a round, so plain loops rather than streams
+    public boolean allHeroesFainted() {
+        for (int i = 0; i < heroes.size(); i++) {
+            if (!heroes.get(i).isFainted()) return false;
+        }
+        return true;
+    }
+
+    public boolean allMonstersDead() {
+        for (int i = 0; i < monsters.size(); i++) {
+            if (!monsters.get(i).isDead()) return false;
+        }
+        return true;
+    }
+
+    private void heroTurn(HeroController controller) {
+        for (int i = 0; i < heroes.size(); i++) {
+            Hero h = heroes.get(i);
+            if (h.isFainted() || h.isDead()) continue;
+            if (allMonstersDead()) return;
+            if (!perform(h, controller.chooseAction(h, this))) skip(h);
+        }
+    }
+
+    /**
+     * Applies one hero action. Returns false (and changes nothing) when the
+     * action cannot be carried out, which the headless loop treats as a skip.
+     */
+    public boolean perform(Hero h, HeroAction action) {
+        switch (action.getKind()) {
+            case ATTACK:
+                if (!isValidTarget(action.getTarget())) return false;
+                attack(h, action.getTarget());
+                return true;
+            case CAST_SPELL:
+                Spell s = action.getSpell();
+                if (s == null || !isValidTarget(action.getTarget())) return false;
+                if (!h.getInventory().contains(s) || h.getMana() < s.getManaCost()) return false;
+                castSpell(h, s, action.getTarget());
+                return true;
+            case USE_POTION:
+                Potion p = action.getPotion();
+                if (p == null || !h.getInventory().contains(p)) return false;
+                usePotion(h, p);
+                return true;
+            case SKIP:
+            default:
+                skip(h);
+                return true;
+        }
+    }
+
+    private boolean isValidTarget(Monster m) {
+        return m != null && !m.isDead() && monsters.contains(m);
+    }
+
+    // ==================== HERO ACTIONS ====================
+
+    /** The hero lets its turn pass. */
+    public void skip(Hero h) {
+        events.heroSkip(h);
+    }
+
+    /** Equipping takes no turn. The item should come from the hero's inventory. */
+    public void equipWeapon(Hero h, Weapon w) {
+        h.equipWeapon(w);
+        events.equip(h, w);
+    }
+
+    public void equipArmor(Hero h, Armor a) {
+        h.equipArmor(a);
+        events.equip(h, a);
+    }
+
+    /**
+     * Weapon attack. Returns the damage dealt, or {@link #DODGED}.
+     */
+    public int attack(Hero h, Monster target) {
+        // Check dodge first
+        if (random.nextDouble() < target.dodgeChance()) {
+            events.heroAttack(h, target, DODGED);
+            return DODGED;
+        }
+
+        // Base damage from hero/weapon + level scaling
+        int weaponBase = h.weaponDamage();
+        int levelBonus = 5 * h.getLevel();      // extra damage per level
+        int base = weaponBase + levelBonus;
+
+        // Safety fallback if weaponDamage is tiny or 0
+        if (base <= 0) {
+            base = 15 + 5 * h.getLevel();
+        }
+
+        // Defense reduces damage proportionally instead of fully subtracting
+        // Example: def = 200 → factor ≈ 100 / 300 ≈ 0.33
+        double defenseFactor = 100.0 / (100.0 + target.getDefense());
+        int effective = (int) Math.round(base * defenseFactor);
+
+        // Ensure a meaningful hit if the attack lands
+        if (effective < 5) {
+            effective = 5;
+        }
+
+        target.setHp(target.getHp() - effective);
+        events.heroAttack(h, target, effective);
+        return effective;
+    }
+
+    /**
+     * Casts a spell the hero can afford. Mana is spent and the spell is consumed
+     * even if the target dodges. Returns the damage dealt, or {@link #DODGED}.
+     */
+    public int castSpell(Hero h, Spell s, Monster target) {
+        // Spend mana
+        h.setMana(h.getMana() - s.getManaCost());
+
+        // Dodge check
+        if (random.nextDouble() < target.dodgeChance()) {
+            h.getInventory().remove(s); // consume spell
+            events.heroSpell(h, s, target, DODGED);
+            return DODGED;
+        }
+
+        int base = h.spellDamage(s);
+        if (base <= 0) base = 10 + h.getLevel() * 3;
+
+        int raw = base - target.getDefense();
+        int effective = Math.max(1, raw); // still okay for spells
+
+        target.setHp(target.getHp() - effective);
+
+        // Apply spell-specific debuffs (good for hero)
+        switch (s.getType()) {
+            case FIRE:
+                target.setDefense((int) (target.getDefense() * 0.9));
+                break;
+            case ICE:
+                target.setBaseDamage((int) (target.getBaseDamage() * 0.9));
+                break;
+            case LIGHTNING:
+                target.reduceDodgeChance();
+                break;
+        }
+
+        // Single-use spell
+        h.getInventory().remove(s);
+        events.heroSpell(h, s, target, effective);
+        events.spellDebuff(target, s.getType());
+        return effective;
+    }
+
+    public void usePotion(Hero h, Potion p) {
+        p.applyTo(h);
+        h.getInventory().remove(p);
+        events.heroPotion(h, p);
+    }
+
+    // ==================== MONSTER TURN ====================
+
+    public void monsterTurn() {
+        List<Hero> aliveHeroes = aliveHeroes();
+        if (aliveHeroes.isEmpty()) return;
+
+        for (int i = 0; i < monsters.size(); i++) {
+            Monster m = monsters.get(i);
+            if (m.isDead()) continue;
+            monsterAttack(m, chooseHeroTarget(aliveHeroes));
+        }
+    }
+
+    /**
+     * Heroes that monsters may target this turn (snapshot taken once per turn).
+     * The list is reused by the next call, so take it once per monster turn.
+     */
+    public List<Hero> aliveHeroes() {
+        targets.clear();
+        for (int i = 0; i < heroes.size(); i++) {
+            Hero h = heroes.get(i);
+            if (!h.isFainted()) targets.add(h);
+        }
+        return targets;
+    }
+
+    public Hero chooseHeroTarget(List<Hero> aliveHeroes) {
+        return aliveHeroes.get(random.nextInt(aliveHeroes.size()));
+    }
+
+    /**
+     * One monster attacks one hero. Returns the damage dealt, 0 if armor
+     * absorbed everything, or {@link #DODGED}. Marks the hero fainted at 0 HP.
+     */
+    public int monsterAttack(Monster m, Hero target) {
+        // Dodge
+        if (random.nextDouble() < target.dodgeChance()) {
+            events.monsterAttack(m, target, DODGED);
+            return DODGED;
+        }
+
+        int dmg = m.getBaseDamage();
+        int reduction = target.damageReduction();
+
+        int effective = Math.max(0, dmg - reduction);
+        if (effective <= 0) {
+            events.monsterAttack(m, target, 0);
+            return 0;
+        }
+
+        int scaled = scaleMonsterDamage(effective, target);
+        target.setHp(target.getHp() - scaled);
+        events.monsterAttack(m, target, scaled);
+
+        if (target.getHp() <= 0) {
+            target.setFainted(true);
+            events.faint(target);
+        }
+        return scaled;
+    }
+
+    /**
+     * Scale monster damage so fights are fairer:
+     *  - Monsters do about 10%–20% of their effective damage.
+     *  - Capped to at most ~20% of hero's max HP.
+     *  - Still at least 2 damage so they don't feel harmless.
+     */
+    public int scaleMonsterDamage(int baseDamage, Hero target) {
+        // Softer factor: 0.10–0.20 instead of 0.15–0.30
+        double factor = 0.10 + random.nextDouble() * 0.10; // 0.10–0.20
+        int scaled = (int) Math.round(baseDamage * factor);
+
+        // Hero max HP based on level
+        int heroMaxHp = target.getLevel() * 100;
+
+        // Cap at ~20% of hero's max HP
+        int cap = Math.max(1, heroMaxHp / 5); // 1/5 = 20%
+        scaled = Math.min(scaled, cap);
+
+        // Monsters should still chip away, but not chunk too hard
+        return Math.max(2, scaled); // at least 2 damage
+    }
+
+    // ==================== END OF ROUND & VICTORY ====================
+
+    public void endOfRoundRegen() {
+        for (int i = 0; i < heroes.size(); i++) {
+            Hero h = heroes.get(i);
+            if (!h.isFainted()) {
+                h.setHp((int) (h.getHp() * 1.1));
+                h.setMana((int) (h.getMana() * 1.1));
+            }
+        }
+        events.regen();
+    }
+
+    public void handleVictory() {
+        int expPerHero = victoryExpPerHero();
+        int goldPerHero = victoryGoldPerHero();
+        events.victory(expPerHero, goldPerHero);
+
+        for (Hero h : heroes) {
+            if (h.isFainted()) {
+                revive(h);
+            } else if (!h.isDead()) {
+                reward(h, expPerHero, goldPerHero);
+            }
+        }
+    }
+
+    /** Gives one hero its share of the spoils. Returns the levels gained. */
+    public int reward(Hero h, int exp, int gold) {
+        int levelsGained = h.gainExpAndGold(exp, gold);
+        events.reward(h, exp, gold, levelsGained);
+        return levelsGained;
+    }
+
+    public int victoryExpPerHero() {
+        return monsters.size() * 2;
+    }
+
+    public int victoryGoldPerHero() {
+        int numMonsters = monsters.size();
+        int maxMonsterLevel = monsters.isEmpty() ? 1 : 0;
+        for (int i = 0; i < monsters.size(); i++) {
+            maxMonsterLevel = Math.max(maxMonsterLevel, monsters.get(i).getLevel());
+        }
+
+        int totalGold = maxMonsterLevel * 100 * numMonsters;
+
+        int activeHeroes = 0;
+        for (Hero h : heroes) {
+            // fainted heroes get revived later, but are not "active"
+            if (!h.isFainted() && !h.isDead()) activeHeroes++;
+        }
+
+        return activeHeroes == 0 ? 0 : totalGold / activeHeroes;
+    }
+
+    /** Fainted heroes come back at half HP and half mana, with no rewards. */
+    public void revive(Hero h) {
+        h.setHp(h.getLevel() * 50);
+        h.setMana(h.getMana() / 2);
+        h.setFainted(false);
+        events.revive(h);
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * The event bus of one battle: passes every event to the subscribed
+ * listeners, synchronously and in subscription order.
+ *
+ * Subscribing replaces the listener array instead of changing it, so
+ * publishing is a plain loop over an array. With no subscribers that array
+ * is empty and an event costs a call and a length check, which is what
+ * simulations and search playouts pay.
+ */
+public class BattleEvents implements BattleListener {
+
+    private static final BattleListener[] NONE = new BattleListener[0];
+
+    private BattleListener[] listeners = NONE;
+
+    public void subscribe(BattleListener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    public void unsubscribe(BattleListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                BattleListener[] rest = new BattleListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, rest, 0, i);
+                System.arraycopy(listeners, i + 1, rest, i, rest.length - i);
+                listeners = rest;
+                return;
+            }
+        }
+    }
+
+    public boolean hasListeners() {
+        return listeners.length > 0;
+    }
+
+    // ========= PUBLISHING =========
+
+    @Override
+    public void round(int number) {
+        for (BattleListener l : listeners) l.round(number);
+    }
+
+    @Override
+    public void heroAttack(Hero h, Monster target, int result) {
+        for (BattleListener l : listeners) l.heroAttack(h, target, result);
+    }
+
+    @Override
+    public void heroSpell(Hero h, Spell s, Monster target, int result) {
+        for (BattleListener l : listeners) l.heroSpell(h, s, target, result);
+    }
+
+    @Override
+    public void spellDebuff(Monster target, SpellType type) {
+        for (BattleListener l : listeners) l.spellDebuff(target, type);
+    }
+
+    @Override
+    public void heroPotion(Hero h, Potion p) {
+        for (BattleListener l : listeners) l.heroPotion(h, p);
+    }
+
+    @Override
+    public void heroSkip(Hero h) {
+        for (BattleListener l : listeners) l.heroSkip(h);
+    }
+
+    @Override
+    public void equip(Hero h, Item item) {
+        for (BattleListener l : listeners) l.equip(h, item);
+    }
+
+    @Override
+    public void monsterAttack(Monster m, Hero target, int result) {
+        for (BattleListener l : listeners) l.monsterAttack(m, target, result);
+    }
+
+    @Override
+    public void faint(Hero h) {
+        for (BattleListener l : listeners) l.faint(h);
+    }
+
+    @Override
+    public void regen() {
+        for (BattleListener l : listeners) l.regen();
+    }
+
+    @Override
+    public void victory(int expPerHero, int goldPerHero) {
+        for (BattleListener l : listeners) l.victory(expPerHero, goldPerHero);
+    }
+
+    @Override
+    public void revive(Hero h) {
+        for (BattleListener l : listeners) l.revive(h);
+    }
+
+    @Override
+    public void reward(Hero h, int exp, int gold, int levelsGained) {
+        for (BattleListener l : listeners) l.reward(h, exp, gold, levelsGained);
+    }
+
+    @Override
+    public void end(boolean heroesWon) {
+        for (BattleListener l : listeners) l.end(heroesWon);
+    }
+}
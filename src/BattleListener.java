@@ -0,0 +1,43 @@
+/**
+ * Receives the events of a battle as {@link BattleEngine} resolves them.
+ *
+ * Every method has an empty default, so a listener only overrides what it
+ * needs. Damage results are the engine's: the damage dealt, 0 when armor
+ * absorbed a monster's blow, or {@link BattleEngine#DODGED}. Listeners run on
+ * the battle's thread and must not change the battle.
+ */
+public interface BattleListener {
+
+    /** A new round begins; the first round is 1. */
+    default void round(int number) {}
+
+    default void heroAttack(Hero h, Monster target, int result) {}
+
+    default void heroSpell(Hero h, Spell s, Monster target, int result) {}
+
+    /** The spell that just hit lowered one of the target's stats, by the spell's type. */
+    default void spellDebuff(Monster target, SpellType type) {}
+
+    default void heroPotion(Hero h, Potion p) {}
+
+    default void heroSkip(Hero h) {}
+
+    /** A weapon or armor was equipped, which takes no turn. */
+    default void equip(Hero h, Item item) {}
+
+    default void monsterAttack(Monster m, Hero target, int result) {}
+
+    default void faint(Hero h) {}
+
+    /** The heroes still standing regenerated at the end of a round. */
+    default void regen() {}
+
+    /** All monsters are dead; each active hero is about to be rewarded with these shares. */
+    default void victory(int expPerHero, int goldPerHero) {}
+
+    default void revive(Hero h) {}
+
+    default void reward(Hero h, int exp, int gold, int levelsGained) {}
+
+    default void end(boolean heroesWon) {}
+}
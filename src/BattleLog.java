@@ -0,0 +1,402 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Compact binary record of one battle, written by {@link BattleEngine} as the
+ * battle runs and replayed by {@link BattleReplay}.
+ *
+ * The header holds the RNG seed and the full starting state of every hero and
+ * monster, including gear and inventories (items are stored once in an item
+ * table and referenced by index). After it come the events, each an opcode
+ * byte followed by a fixed number of zigzag varint operands.
+ *
+ * The engine subscribes the log to its {@link BattleEvents}. Events are written
+ * straight into one byte array that is allocated up front and reused across
+ * battles, so recording creates no objects per event.
+ */
+public class BattleLog implements BattleListener {
+
+    private static final int MAGIC = 0x4D48424C; // "MHBL"
+    private static final int VERSION = 1;
+
+    // Event opcodes and their operands
+    public static final byte ROUND = 0;           // -
+    public static final byte HERO_ATTACK = 1;     // hero, monster, damage or DODGED
+    public static final byte HERO_SPELL = 2;      // hero, item, monster, damage or DODGED
+    public static final byte HERO_POTION = 3;     // hero, item
+    public static final byte HERO_SKIP = 4;       // hero
+    public static final byte EQUIP_WEAPON = 5;    // hero, item
+    public static final byte EQUIP_ARMOR = 6;     // hero, item
+    public static final byte MONSTER_ATTACK = 7;  // monster, hero, damage, 0 or DODGED
+    public static final byte FAINT = 8;           // hero
+    public static final byte REGEN = 9;           // -
+    public static final byte REVIVE = 10;         // hero
+    public static final byte REWARD = 11;         // hero, exp, gold, levels gained
+    public static final byte END = 12;            // 1 if the heroes won
+
+    private static final int[] OPERANDS = {0, 3, 4, 2, 1, 2, 2, 3, 1, 0, 1, 4, 1};
+
+    private byte[] buf;
+    private int size = 0;
+
+    // Combatants and items of the battle being recorded, for index lookups
+    private List<Hero> heroes;
+    private List<Monster> monsters;
+    private final IdentityHashMap<Item, Integer> itemIndex = new IdentityHashMap<>();
+    private final List<Item> items = new ArrayList<>();
+
+    // Header scratch space, reused by every battle
+    private final ByteArrayOutputStream header = new ByteArrayOutputStream(1024);
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+    private final DataOutputStream headerOut = new DataOutputStream(header);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+
+    public BattleLog() {
+        this(4096);
+    }
+
+    public BattleLog(int capacity) {
+        buf = new byte[capacity];
+    }
+
+    /** Bytes recorded so far (header and events). */
+    public int size() { return size; }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    public void save(String filename) throws IOException {
+        Files.write(Paths.get(filename), toByteArray());
+    }
+
+    // ========= HEADER =========
+
+    /**
+     * Clears the log and records the seed and starting state of a new battle.
+     * Called by the engine before anything happens.
+     */
+    void begin(long seed, List<Hero> heroes, List<Monster> monsters) {
+        this.heroes = heroes;
+        this.monsters = monsters;
+        itemIndex.clear();
+        items.clear();
+        for (Hero h : heroes) {
+            addItem(h.getWeapon());
+            addItem(h.getArmor());
+            for (Item item : h.getInventory()) addItem(item);
+        }
+
+        try {
+            header.reset();
+            DataOutputStream out = headerOut;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+
+            out.writeShort(items.size());
+            for (Item item : items) writeRecord(out, item);
+
+            out.writeByte(heroes.size());
+            for (Hero h : heroes) {
+                writeRecord(out, h);
+                out.writeInt(h.getHp());
+                out.writeInt(h.getDefenseBonus());
+                out.writeBoolean(h.isFainted());
+                out.writeBoolean(h.isUsingTwoHands());
+                out.writeShort(indexOf(h.getWeapon()));
+                out.writeShort(indexOf(h.getArmor()));
+                out.writeShort(stackCount(h.getInventory()));
+                for (Item item : h.getInventory()) {
+                    out.writeShort(indexOf(item));
+                    out.writeShort(h.getInventory().count(item));
+                }
+            }
+
+            out.writeByte(monsters.size());
+            for (Monster m : monsters) {
+                writeRecord(out, m);
+                out.writeInt(m.getHp());
+            }
+            out.flush();
+
+            size = 0;
+            ensureCapacity(header.size());
+            size = header.size();
+            System.arraycopy(header.toByteArray(), 0, buf, 0, size);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode battle log header", e); // in-memory stream
+        }
+    }
+
+    private void addItem(Item item) {
+        if (item != null && !itemIndex.containsKey(item)) {
+            itemIndex.put(item, items.size());
+            items.add(item);
+        }
+    }
+
+    private int indexOf(Item item) {
+        Integer i = item == null ? null : itemIndex.get(item);
+        return i == null ? -1 : i;
+    }
+
+    private static int stackCount(Inventory inventory) {
+        int n = 0;
+        for (Item ignored : inventory) n++;
+        return n;
+    }
+
+    private void writeRecord(DataOutputStream out, Object value) throws IOException {
+        record.reset();
+        CatalogSnapshot.encode(recordOut, value);
+        recordOut.flush();
+        out.writeShort(record.size());
+        record.writeTo(out);
+    }
+
+    // ========= EVENTS =========
+
+    @Override
+    public void round(int number) { event(ROUND); }
+
+    @Override
+    public void regen() { event(REGEN); }
+
+    @Override
+    public void heroAttack(Hero h, Monster target, int result) {
+        event(HERO_ATTACK);
+        varint(heroes.indexOf(h));
+        varint(monsters.indexOf(target));
+        varint(result);
+    }
+
+    @Override
+    public void heroSpell(Hero h, Spell s, Monster target, int result) {
+        event(HERO_SPELL);
+        varint(heroes.indexOf(h));
+        varint(indexOf(s));
+        varint(monsters.indexOf(target));
+        varint(result);
+    }
+
+    @Override
+    public void heroPotion(Hero h, Potion p) {
+        event(HERO_POTION);
+        varint(heroes.indexOf(h));
+        varint(indexOf(p));
+    }
+
+    @Override
+    public void heroSkip(Hero h) {
+        event(HERO_SKIP);
+        varint(heroes.indexOf(h));
+    }
+
+    @Override
+    public void equip(Hero h, Item item) {
+        event(item instanceof Weapon ? EQUIP_WEAPON : EQUIP_ARMOR);
+        varint(heroes.indexOf(h));
+        varint(indexOf(item));
+    }
+
+    @Override
+    public void monsterAttack(Monster m, Hero target, int result) {
+        event(MONSTER_ATTACK);
+        varint(monsters.indexOf(m));
+        varint(heroes.indexOf(target));
+        varint(result);
+    }
+
+    @Override
+    public void faint(Hero h) {
+        event(FAINT);
+        varint(heroes.indexOf(h));
+    }
+
+    @Override
+    public void revive(Hero h) {
+        event(REVIVE);
+        varint(heroes.indexOf(h));
+    }
+
+    @Override
+    public void reward(Hero h, int exp, int gold, int levels) {
+        event(REWARD);
+        varint(heroes.indexOf(h));
+        varint(exp);
+        varint(gold);
+        varint(levels);
+    }
+
+    @Override
+    public void end(boolean heroesWon) {
+        event(END);
+        varint(heroesWon ? 1 : 0);
+    }
+
+    private void event(byte opcode) {
+        ensureCapacity(size + 1);
+        buf[size++] = opcode;
+    }
+
+    private void varint(int value) {
+        int v = (value << 1) ^ (value >> 31); // zigzag, so -1 takes one byte
+        ensureCapacity(size + 5);
+        while ((v & ~0x7F) != 0) {
+            buf[size++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[size++] = (byte) v;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(needed, buf.length * 2));
+        }
+    }
+
+    // ========= READING =========
+
+    /** A recorded battle: its seed, starting state and event bytes. */
+    public static class Recording {
+        private final long seed;
+        private final List<Item> items;
+        private final List<Hero> heroes;
+        private final List<Monster> monsters;
+        private final byte[] data;
+        private final int eventsStart;
+
+        private Recording(long seed, List<Item> items, List<Hero> heroes, List<Monster> monsters,
+                          byte[] data, int eventsStart) {
+            this.seed = seed;
+            this.items = items;
+            this.heroes = heroes;
+            this.monsters = monsters;
+            this.data = data;
+            this.eventsStart = eventsStart;
+        }
+
+        public long getSeed() { return seed; }
+        public List<Item> getItems() { return items; }
+        /** Fresh copies of the heroes as they were when the battle started. */
+        public List<Hero> getHeroes() { return heroes; }
+        /** Fresh copies of the monsters as they were when the battle started. */
+        public List<Monster> getMonsters() { return monsters; }
+        public byte[] getData() { return data; }
+
+        public EventReader events() {
+            return new EventReader(data, eventsStart);
+        }
+    }
+
+    /**
+     * Parses a log and rebuilds the starting heroes and monsters. Each call
+     * builds new objects, so a recording can be replayed more than once.
+     */
+    public static Recording read(byte[] data) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Not a battle log");
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Battle log version " + version + ", expected " + VERSION);
+            long seed = in.getLong();
+
+            List<Item> items = new ArrayList<>();
+            int itemCount = in.getShort() & 0xFFFF;
+            for (int i = 0; i < itemCount; i++) items.add((Item) readRecord(in));
+
+            List<Hero> heroes = new ArrayList<>();
+            int heroCount = in.get();
+            for (int i = 0; i < heroCount; i++) {
+                Hero h = (Hero) readRecord(in);
+                h.setHp(in.getInt());
+                h.addDefense(in.getInt());
+                h.setFainted(in.get() != 0);
+                boolean twoHands = in.get() != 0;
+                int weapon = in.getShort();
+                int armor = in.getShort();
+                if (weapon >= 0) h.equipWeapon((Weapon) items.get(weapon));
+                if (armor >= 0) h.equipArmor((Armor) items.get(armor));
+                h.setUsingTwoHands(twoHands);
+                int stacks = in.getShort() & 0xFFFF;
+                for (int s = 0; s < stacks; s++) {
+                    Item item = items.get(in.getShort());
+                    int count = in.getShort() & 0xFFFF;
+                    for (int c = 0; c < count; c++) h.getInventory().add(item);
+                }
+                heroes.add(h);
+            }
+
+            List<Monster> monsters = new ArrayList<>();
+            int monsterCount = in.get();
+            for (int i = 0; i < monsterCount; i++) {
+                Monster m = (Monster) readRecord(in);
+                m.setHp(in.getInt());
+                monsters.add(m);
+            }
+            return new Recording(seed, items, heroes, monsters, data, in.position());
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt battle log: " + e, e);
+        }
+    }
+
+    public static Recording read(String filename) throws IOException {
+        return read(Files.readAllBytes(Paths.get(filename)));
+    }
+
+    private static Object readRecord(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        Object record = CatalogSnapshot.decode(in, in.position());
+        in.position(in.position() + length);
+        return record;
+    }
+
+    /** Steps through the events of a log without creating an object per event. */
+    public static class EventReader {
+        private final byte[] data;
+        private int pos;
+        private byte opcode;
+        private final int[] operands = new int[4];
+
+        EventReader(byte[] data, int start) {
+            this.data = data;
+            this.pos = start;
+        }
+
+        /** Moves to the next event. Returns false at the end of the log. */
+        public boolean next() throws IOException {
+            if (pos >= data.length) return false;
+            opcode = data[pos++];
+            if (opcode < 0 || opcode >= OPERANDS.length) {
+                throw new IOException("Corrupt battle log: unknown event " + opcode + " at byte " + (pos - 1));
+            }
+            for (int i = 0; i < OPERANDS[opcode]; i++) {
+                operands[i] = readVarint();
+            }
+            return true;
+        }
+
+        public byte opcode() { return opcode; }
+        public int operand(int i) { return operands[i]; }
+
+        private int readVarint() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (pos >= data.length) throw new IOException("Corrupt battle log: truncated event");
+                byte b = data[pos++];
+                v |= (b & 0x7F) << shift;
+                if (b >= 0) return (v >>> 1) ^ -(v & 1);
+            }
+            throw new IOException("Corrupt battle log: bad number");
+        }
+    }
+}
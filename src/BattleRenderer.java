@@ -0,0 +1,139 @@
+/**
+ * Prints what happens in a battle to the console, in color: green for what
+ * goes the heroes' way, red for what doesn't. Subscribed to the engine's
+ * events by the console {@link Battle}; headless battles have no renderer.
+ */
+public class BattleRenderer implements BattleListener {
+
+    // ANSI colors for console
+    private static final String RED   = "\u001B[31m";
+    private static final String GREEN = "\u001B[32m";
+    private static final String RESET = "\u001B[0m";
+
+    private final GameIO io;
+    private final StringBuilder line = new StringBuilder(); // reused by every message
+
+    public BattleRenderer(GameIO io) {
+        this.io = io;
+    }
+
+    // ========= COLORED MESSAGE HELPERS =========
+
+    void printPositive(CharSequence msg) {
+        io.print(GREEN);
+        io.print(msg);
+        io.println(RESET);
+    }
+
+    void printNegative(CharSequence msg) {
+        io.print(RED);
+        io.print(msg);
+        io.println(RESET);
+    }
+
+    /** The shared line buffer, emptied. */
+    private StringBuilder line() {
+        line.setLength(0);
+        return line;
+    }
+
+    // ========= HERO ACTIONS =========
+
+    @Override
+    public void heroAttack(Hero h, Monster target, int result) {
+        if (result == BattleEngine.DODGED) {
+            printNegative(line().append(target.getName()).append(" dodged the attack!"));
+            return;
+        }
+        printPositive(line().append(h.getName()).append(" attacked ").append(target.getName())
+                .append(" for ").append(result).append(" damage!"));
+    }
+
+    @Override
+    public void heroSpell(Hero h, Spell s, Monster target, int result) {
+        if (result == BattleEngine.DODGED) {
+            printNegative(line().append(target.getName()).append(" dodged the spell!"));
+            return;
+        }
+        printPositive(line().append(h.getName()).append(" cast ").append(s.getName())
+                .append(" on ").append(target.getName())
+                .append(" for ").append(result).append(" damage!"));
+    }
+
+    @Override
+    public void spellDebuff(Monster target, SpellType type) {
+        switch (type) {
+            case FIRE:
+                printPositive(line().append(target.getName()).append("'s defense was reduced!"));
+                break;
+            case ICE:
+                printPositive(line().append(target.getName()).append("'s damage was reduced!"));
+                break;
+            case LIGHTNING:
+                printPositive(line().append(target.getName()).append("'s dodge chance was reduced!"));
+                break;
+        }
+    }
+
+    @Override
+    public void heroPotion(Hero h, Potion p) {
+        printPositive(line().append(h.getName()).append(" used potion ").append(p.getName()));
+    }
+
+    @Override
+    public void heroSkip(Hero h) {
+        io.println(line().append(h.getName()).append(" waits."));
+    }
+
+    @Override
+    public void equip(Hero h, Item item) {
+        printPositive(line().append(h.getName()).append(" equipped ").append(item.getName()));
+    }
+
+    // ========= MONSTER TURN =========
+
+    @Override
+    public void monsterAttack(Monster m, Hero target, int result) {
+        if (result == BattleEngine.DODGED) {
+            printPositive(line().append(target.getName())
+                    .append(" dodged the attack from ").append(m.getName()).append('!'));
+        } else if (result == 0) {
+            printPositive(line().append(m.getName()).append(" attacked ")
+                    .append(target.getName()).append(" but dealt no damage!"));
+        } else {
+            printNegative(line().append(m.getName()).append(" attacked ").append(target.getName())
+                    .append(" for ").append(result).append(" damage!"));
+        }
+    }
+
+    @Override
+    public void faint(Hero h) {
+        printNegative(line().append(h.getName()).append(" fainted!"));
+    }
+
+    // ========= OUTCOME =========
+
+    @Override
+    public void victory(int expPerHero, int goldPerHero) {
+        printPositive("Heroes won the battle!");
+    }
+
+    @Override
+    public void revive(Hero h) {
+        printNegative(line().append(h.getName()).append(" was revived but gained no gold or exp."));
+    }
+
+    @Override
+    public void reward(Hero h, int exp, int gold, int levelsGained) {
+        for (int i = levelsGained - 1; i >= 0; i--) {
+            io.println(line().append(h.getName()).append(" leveled up! Now level ").append(h.getLevel() - i));
+        }
+        printPositive(line().append(h.getName()).append(" gained ").append(exp)
+                .append(" exp and ").append(gold).append(" gold."));
+    }
+
+    @Override
+    public void end(boolean heroesWon) {
+        if (!heroesWon) printNegative("Heroes were defeated...");
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays a {@link BattleLog} without any console input.
+ *
+ * The heroes and monsters are rebuilt from the log header and fought again on
+ * a {@link BattleEngine} seeded with the recorded seed, with a controller that
+ * plays back the recorded hero decisions. The replay records itself too, and
+ * matches the original if the two logs are byte for byte equal.
+ */
+public class BattleReplay {
+
+    public static final String LAST_BATTLE_FILE = "last-battle.bin";
+
+    /** Thrown by the playback when a diverged replay asks for more decisions than were recorded. */
+    private static final class RecordingExhausted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RecordingExhausted() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Plays back recorded decisions; outcomes come from the engine itself. */
+    private static final class RecordedController implements HeroController {
+        private final BattleLog.EventReader events;
+        private final List<Item> items;
+        private final List<Hero> heroes;
+
+        RecordedController(BattleLog.Recording recording, List<Hero> heroes) {
+            this.events = recording.events();
+            this.items = recording.getItems();
+            this.heroes = heroes;
+        }
+
+        @Override
+        public HeroAction chooseAction(Hero hero, BattleEngine battle) {
+            int heroIndex = heroes.indexOf(hero);
+            try {
+                while (events.next()) {
+                    byte op = events.opcode();
+                    if (op == BattleLog.MONSTER_ATTACK || op == BattleLog.FAINT || op == BattleLog.REVIVE
+                            || op == BattleLog.REWARD || op == BattleLog.ROUND || op == BattleLog.REGEN
+                            || op == BattleLog.END || events.operand(0) != heroIndex) {
+                        continue;
+                    }
+                    List<Monster> monsters = battle.getMonsters();
+                    switch (op) {
+                        case BattleLog.EQUIP_WEAPON:
+                            battle.equipWeapon(hero, (Weapon) items.get(events.operand(1)));
+                            break;
+                        case BattleLog.EQUIP_ARMOR:
+                            battle.equipArmor(hero, (Armor) items.get(events.operand(1)));
+                            break;
+                        case BattleLog.HERO_ATTACK:
+                            return battle.attackAction(events.operand(1));
+                        case BattleLog.HERO_SPELL:
+                            return HeroAction.castSpell((Spell) items.get(events.operand(1)),
+                                    monsters.get(events.operand(2)));
+                        case BattleLog.HERO_POTION:
+                            return HeroAction.usePotion((Potion) items.get(events.operand(1)));
+                        case BattleLog.HERO_SKIP:
+                        default:
+                            return HeroAction.skip();
+                    }
+                }
+            } catch (IOException e) {
+                // A corrupt tail ends the playback like a short one
+            }
+            // Without this a diverged replay could skip turns forever
+            throw new RecordingExhausted();
+        }
+    }
+
+    /**
+     * Fights the recorded battle again. Returns the offset of the first byte
+     * where the replay differs from the recording, or -1 if it is identical.
+     */
+    public static int replay(BattleLog.Recording recording) {
+        List<Hero> heroes = recording.getHeroes();
+        BattleLog replayed = new BattleLog(recording.getData().length);
+        BattleEngine engine = new BattleEngine(heroes, recording.getMonsters(), recording.getSeed(), replayed);
+        try {
+            engine.fight(new RecordedController(recording, heroes));
+        } catch (RecordingExhausted e) {
+            // The bytes written so far still show where the replay went its own way
+        }
+
+        byte[] a = recording.getData();
+        byte[] b = replayed.toByteArray();
+        if (Arrays.equals(a, b)) return -1;
+        int i = 0;
+        while (i < a.length && i < b.length && a[i] == b[i]) i++;
+        return i;
+    }
+
+    // ==================== DESCRIPTION ====================
+
+    /** The recorded battle as readable text, one line per event. */
+    public static String describe(BattleLog.Recording recording) throws IOException {
+        List<Hero> heroes = recording.getHeroes();
+        List<Monster> monsters = recording.getMonsters();
+        List<Item> items = recording.getItems();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Seed: ").append(recording.getSeed()).append('\n');
+        sb.append("--- Heroes ---\n");
+        for (Hero h : heroes) sb.append(h).append(" Items:").append(h.getInventory()).append('\n');
+        sb.append("--- Monsters ---\n");
+        for (Monster m : monsters) sb.append(m).append('\n');
+
+        BattleLog.EventReader e = recording.events();
+        int round = 0;
+        while (e.next()) {
+            switch (e.opcode()) {
+                case BattleLog.ROUND:
+                    sb.append("Round ").append(++round).append('\n');
+                    break;
+                case BattleLog.HERO_ATTACK:
+                    sb.append("  ").append(name(heroes, e.operand(0))).append(" attacks ")
+                            .append(name(monsters, e.operand(1))).append(": ").append(result(e.operand(2))).append('\n');
+                    break;
+                case BattleLog.HERO_SPELL:
+                    sb.append("  ").append(name(heroes, e.operand(0))).append(" casts ")
+                            .append(items.get(e.operand(1)).getName()).append(" on ")
+                            .append(name(monsters, e.operand(2))).append(": ").append(result(e.operand(3))).append('\n');
+                    break;
+                case BattleLog.HERO_POTION:
+                    sb.append("  ").append(name(heroes, e.operand(0))).append(" drinks ")
+                            .append(items.get(e.operand(1)).getName()).append('\n');
+                    break;
+                case BattleLog.HERO_SKIP:
+                    sb.append("  ").append(name(heroes, e.operand(0))).append(" skips\n");
+                    break;
+                case BattleLog.EQUIP_WEAPON:
+                case BattleLog.EQUIP_ARMOR:
+                    sb.append("  ").append(name(heroes, e.operand(0))).append(" equips ")
+                            .append(items.get(e.operand(1)).getName()).append('\n');
+                    break;
+                case BattleLog.MONSTER_ATTACK:
+                    sb.append("  ").append(name(monsters, e.operand(0))).append(" attacks ")
+                            .append(name(heroes, e.operand(1))).append(": ")
+                            .append(e.operand(2) == 0 ? "no damage" : result(e.operand(2))).append('\n');
+                    break;
+                case BattleLog.FAINT:
+                    sb.append("  ").append(name(heroes, e.operand(0))).append(" faints\n");
+                    break;
+                case BattleLog.REGEN:
+                    sb.append("  heroes regenerate\n");
+                    break;
+                case BattleLog.REVIVE:
+                    sb.append(name(heroes, e.operand(0))).append(" is revived\n");
+                    break;
+                case BattleLog.REWARD:
+                    sb.append(name(heroes, e.operand(0))).append(" gains ").append(e.operand(1))
+                            .append(" exp and ").append(e.operand(2)).append(" gold");
+                    if (e.operand(3) > 0) sb.append(", +").append(e.operand(3)).append(" level(s)");
+                    sb.append('\n');
+                    break;
+                case BattleLog.END:
+                    sb.append(e.operand(0) == 1 ? "Heroes won\n" : "Heroes were defeated\n");
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String name(List<? extends Living> list, int index) {
+        return index >= 0 && index < list.size() ? list.get(index).getName() : "#" + index;
+    }
+
+    private static String result(int damage) {
+        return damage == BattleEngine.DODGED ? "dodged" : damage + " damage";
+    }
+
+    // ==================== COMMAND LINE ====================
+
+    /** Usage: replay [log file]; defaults to the log of the last battle played. */
+    public static void runFromCommandLine(String[] args) throws IOException {
+        String file = args.length > 1 ? args[1] : LAST_BATTLE_FILE;
+        GameIO.console().print(describe(BattleLog.read(file)));
+
+        int diverged = replay(BattleLog.read(file));
+        if (diverged < 0) {
+            GameIO.console().println("Replay: identical to the recording.");
+        } else {
+            GameIO.console().println("Replay: differs from the recording at byte " + diverged + ".");
+        }
+    }
+}
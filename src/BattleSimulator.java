@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Monte Carlo battle simulator.
+ *
+ * Runs many headless battles of one party against random monster groups on a
+ * fork-join pool. Work is split into a fixed tree of ranges and each range gets
+ * its own {@link SplittableRandom} stream split off the master seed, so the
+ * results only depend on the seed and the battle count, never on thread count.
+ *
+ * With the default controller and a party without spells or potions, each
+ * range is fought as one {@link BatchBattle}, which gives the same results as
+ * fighting the battles one by one with BattleEngine, many times faster.
+ */
+public class BattleSimulator {
+
+    /** Battles run sequentially by one leaf task before splitting stops. */
+    private static final int BATCH_SIZE = 256;
+
+    private final List<Hero> party;
+    private final EncounterTable encounters;
+    private Supplier<HeroController> controllers = SimpleHeroController::new;
+    private boolean batched = true;
+    private boolean collectStats = false;
+
+    public BattleSimulator(List<Hero> party, EncounterTable encounters) {
+        this.party = party;
+        this.encounters = encounters;
+    }
+
+    /** Plays the heroes with a fresh controller from the supplier in every battle. */
+    public BattleSimulator withController(Supplier<HeroController> controllers) {
+        this.controllers = controllers;
+        this.batched = false;
+        return this;
+    }
+
+    /** Whether battles the batch kernel can fight go to it (the default) or to BattleEngine. */
+    public BattleSimulator withBatchKernel(boolean batched) {
+        this.batched = batched;
+        return this;
+    }
+
+    /**
+     * Whether every battle also feeds a {@link BattleStats} through its event
+     * bus. The batch kernel publishes no events, so these battles are fought
+     * by BattleEngine.
+     */
+    public BattleSimulator withStats(boolean collectStats) {
+        this.collectStats = collectStats;
+        return this;
+    }
+
+    // ========= RESULTS =========
+
+    public static class Result {
+        private long battles;
+        private long wins;
+        private long totalRounds;
+        private long totalHpRemaining;
+        private BattleStats stats; // null unless collected
+
+        private void add(Result other) {
+            battles += other.battles;
+            wins += other.wins;
+            totalRounds += other.totalRounds;
+            totalHpRemaining += other.totalHpRemaining;
+            if (other.stats != null) {
+                if (stats == null) stats = new BattleStats();
+                stats.add(other.stats);
+            }
+        }
+
+        public long getBattles() { return battles; }
+        public long getWins() { return wins; }
+        /** What happened over all battles, or null if the simulator did not collect it. */
+        public BattleStats getStats() { return stats; }
+
+        public double winRate() {
+            return battles == 0 ? 0 : (double) wins / battles;
+        }
+
+        public double averageRounds() {
+            return battles == 0 ? 0 : (double) totalRounds / battles;
+        }
+
+        /** Average total party HP left when a battle ends. */
+        public double averageHpRemaining() {
+            return battles == 0 ? 0 : (double) totalHpRemaining / battles;
+        }
+
+        @Override
+        public String toString() {
+            String summary = String.format("Battles: %d, Win rate: %.2f%%, Avg rounds: %.2f, Avg party HP left: %.1f",
+                    battles, winRate() * 100, averageRounds(), averageHpRemaining());
+            return stats == null ? summary : summary + System.lineSeparator() + stats;
+        }
+    }
+
+    // ========= RUNNING =========
+
+    public Result run(int battles, long seed) {
+        return run(battles, seed, ForkJoinPool.commonPool());
+    }
+
+    public Result run(int battles, long seed, ForkJoinPool pool) {
+        return pool.invoke(new SimulationTask(0, battles, new SplittableRandom(seed)));
+    }
+
+    private int highestLevel() {
+        int highestLevel = 1;
+        for (Hero h : party) {
+            highestLevel = Math.max(highestLevel, h.getLevel());
+        }
+        return highestLevel;
+    }
+
+    /**
+     * Plays one battle with fresh copies of the party, the same way
+     * Game.startBattle builds an encounter: the monsters are drawn from the
+     * battle's stream, then the battle seed.
+     */
+    private void simulateOne(SplittableRandom random, Result result) {
+        List<Hero> heroes = new ArrayList<>();
+        for (Hero h : party) {
+            heroes.add(h.copy());
+        }
+        List<Monster> monsters = encounters.monsterGroup(heroes.size(), highestLevel(), random);
+
+        BattleEngine engine = new BattleEngine(heroes, monsters, random.nextLong(), null);
+        if (result.stats != null) engine.getEvents().subscribe(result.stats);
+        boolean won = engine.fight(controllers.get());
+
+        result.battles++;
+        if (won) result.wins++;
+        result.totalRounds += engine.getRounds();
+        for (Hero h : heroes) {
+            result.totalHpRemaining += h.getHp();
+        }
+    }
+
+    /** The battles of one range fought side by side, drawn exactly as {@link #simulateOne} does. */
+    private void simulateBatch(int count, SplittableRandom random, Result result) {
+        BatchBattle batch = new BatchBattle(count, party.size(), party.size());
+        int highestLevel = highestLevel();
+        List<Monster> monsters = new ArrayList<>(party.size());
+        for (int lane = 0; lane < count; lane++) {
+            SplittableRandom battleRandom = random.split();
+            monsters.clear();
+            for (int i = 0; i < party.size(); i++) {
+                monsters.add(encounters.randomTemplateOfLevel(highestLevel, battleRandom));
+            }
+            batch.load(lane, party, monsters, battleRandom.nextLong());
+        }
+        batch.run();
+
+        for (int lane = 0; lane < count; lane++) {
+            result.battles++;
+            if (batch.heroesWon(lane)) result.wins++;
+            result.totalRounds += batch.getRounds(lane);
+            for (int h = 0; h < batch.heroCount(lane); h++) {
+                result.totalHpRemaining += batch.heroHp(lane, h);
+            }
+        }
+    }
+
+    private class SimulationTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+
+        SimulationTask(int from, int to, SplittableRandom random) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= BATCH_SIZE) {
+                Result result = new Result();
+                if (collectStats) result.stats = new BattleStats();
+                if (batched && !collectStats && BatchBattle.supports(party)) {
+                    simulateBatch(to - from, random, result);
+                } else {
+                    for (int i = from; i < to; i++) {
+                        simulateOne(random.split(), result);
+                    }
+                }
+                return result;
+            }
+
+            // Split the RNG before forking so each half always gets the same stream
+            int mid = (from + to) >>> 1;
+            SimulationTask left = new SimulationTask(from, mid, random.split());
+            SimulationTask right = new SimulationTask(mid, to, random);
+            left.fork();
+            Result result = right.compute();
+            result.add(left.join());
+            return result;
+        }
+    }
+
+    // ========= COMMAND LINE =========
+
+    /**
+     * Usage: simulate [battles] [seed] [hero names...] [--mcts ms] [--stats]
+     * Without hero names, the party is the first Warrior, Sorcerer and Paladin.
+     * With --mcts the heroes are played by {@link MctsHeroController}, thinking
+     * the given milliseconds per action on one thread per battle. With --stats
+     * the report adds hit rates, damage and faints collected from every battle.
+     */
+    public static void runFromCommandLine(String[] args) throws IOException {
+        long mctsMillis = -1;
+        boolean stats = false;
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("--mcts") && i + 1 < args.length) {
+                mctsMillis = Long.parseLong(args[++i]);
+            } else if (args[i].equalsIgnoreCase("--stats")) {
+                stats = true;
+            } else {
+                rest.add(args[i]);
+            }
+        }
+        args = rest.toArray(new String[0]);
+
+        int battles = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+
+        Catalog catalog = Catalog.load();
+
+        List<Hero> party = new ArrayList<>();
+        if (args.length > 3) {
+            for (int i = 3; i < args.length; i++) {
+                Hero found = null;
+                for (Hero h : catalog.getHeroes()) {
+                    if (h.getName().equalsIgnoreCase(args[i])) found = h;
+                }
+                if (found == null) {
+                    GameIO.console().println("Unknown hero: " + args[i]);
+                    return;
+                }
+                party.add(found);
+            }
+        } else {
+            party.add(firstOfClass(catalog.getHeroes(), Warrior.class));
+            party.add(firstOfClass(catalog.getHeroes(), Sorcerer.class));
+            party.add(firstOfClass(catalog.getHeroes(), Paladin.class));
+        }
+
+        BattleSimulator simulator = new BattleSimulator(party, new EncounterTable(
+                catalog.getDragons(), catalog.getExoskeletons(), catalog.getSpirits()));
+        if (mctsMillis >= 0) {
+            // Battles already run in parallel, so each search stays on its own thread
+            final long millis = mctsMillis;
+            simulator.withController(() -> new MctsHeroController(millis, 1,
+                    ForkJoinPool.commonPool(), new SplittableRandom().nextLong()));
+        }
+        simulator.withStats(stats);
+
+        long start = System.nanoTime();
+        Result result = simulator.run(battles, seed);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        StringBuilder names = new StringBuilder();
+        for (Hero h : party) {
+            if (names.length() > 0) names.append(", ");
+            names.append(h.getName());
+        }
+        GameIO.console().println("Party: " + names);
+        GameIO.console().println(result.toString());
+        GameIO.console().println("Elapsed: " + elapsedMs + " ms on "
+                + ForkJoinPool.commonPool().getParallelism() + " worker threads");
+    }
+
+    private static Hero firstOfClass(List<Hero> heroes, Class<? extends Hero> type) {
+        for (Hero h : heroes) {
+            if (type.isInstance(h)) return h;
+        }
+        throw new IllegalStateException("No " + type.getSimpleName() + " in the data files");
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.Locale;
+
+/**
+ * Counts what happens over any number of battles: hits, dodges and damage on
+ * both sides, spells, potions, faints and levels. Subscribe one to each
+ * battle's {@link BattleEvents}; collectors of different threads are combined
+ * with {@link #add(BattleStats)}.
+ */
+public class BattleStats implements BattleListener {
+
+    private long rounds;
+    private long heroAttacks;
+    private long heroAttacksDodged;
+    private long heroAttackDamage;
+    private long spellsCast;
+    private long spellsDodged;
+    private long spellDamage;
+    private long potionsUsed;
+    private long monsterAttacks;
+    private long monsterAttacksDodged;
+    private long monsterAttacksAbsorbed;
+    private long damageTaken;
+    private long faints;
+    private long revives;
+    private long levelsGained;
+
+    public void add(BattleStats other) {
+        rounds += other.rounds;
+        heroAttacks += other.heroAttacks;
+        heroAttacksDodged += other.heroAttacksDodged;
+        heroAttackDamage += other.heroAttackDamage;
+        spellsCast += other.spellsCast;
+        spellsDodged += other.spellsDodged;
+        spellDamage += other.spellDamage;
+        potionsUsed += other.potionsUsed;
+        monsterAttacks += other.monsterAttacks;
+        monsterAttacksDodged += other.monsterAttacksDodged;
+        monsterAttacksAbsorbed += other.monsterAttacksAbsorbed;
+        damageTaken += other.damageTaken;
+        faints += other.faints;
+        revives += other.revives;
+        levelsGained += other.levelsGained;
+    }
+
+    // ========= EVENTS =========
+
+    @Override
+    public void round(int number) {
+        rounds++;
+    }
+
+    @Override
+    public void heroAttack(Hero h, Monster target, int result) {
+        heroAttacks++;
+        if (result == BattleEngine.DODGED) heroAttacksDodged++;
+        else heroAttackDamage += result;
+    }
+
+    @Override
+    public void heroSpell(Hero h, Spell s, Monster target, int result) {
+        spellsCast++;
+        if (result == BattleEngine.DODGED) spellsDodged++;
+        else spellDamage += result;
+    }
+
+    @Override
+    public void heroPotion(Hero h, Potion p) {
+        potionsUsed++;
+    }
+
+    @Override
+    public void monsterAttack(Monster m, Hero target, int result) {
+        monsterAttacks++;
+        if (result == BattleEngine.DODGED) monsterAttacksDodged++;
+        else if (result == 0) monsterAttacksAbsorbed++;
+        else damageTaken += result;
+    }
+
+    @Override
+    public void faint(Hero h) {
+        faints++;
+    }
+
+    @Override
+    public void revive(Hero h) {
+        revives++;
+    }
+
+    @Override
+    public void reward(Hero h, int exp, int gold, int levels) {
+        levelsGained += levels;
+    }
+
+    // ========= QUERIES =========
+
+    public long getRounds() { return rounds; }
+    public long getHeroAttacks() { return heroAttacks; }
+    public long getSpellsCast() { return spellsCast; }
+    public long getPotionsUsed() { return potionsUsed; }
+    public long getMonsterAttacks() { return monsterAttacks; }
+    public long getDamageTaken() { return damageTaken; }
+    public long getFaints() { return faints; }
+    public long getRevives() { return revives; }
+    public long getLevelsGained() { return levelsGained; }
+
+    /** Share of hero weapon attacks that landed. */
+    public double heroHitRate() {
+        return share(heroAttacks - heroAttacksDodged, heroAttacks);
+    }
+
+    /** Average damage of a weapon attack that landed. */
+    public double averageHeroHit() {
+        return share(heroAttackDamage, heroAttacks - heroAttacksDodged);
+    }
+
+    public double averageSpellHit() {
+        return share(spellDamage, spellsCast - spellsDodged);
+    }
+
+    /** Share of monster attacks the heroes dodged. */
+    public double heroDodgeRate() {
+        return share(monsterAttacksDodged, monsterAttacks);
+    }
+
+    private static double share(long part, long whole) {
+        return whole == 0 ? 0 : (double) part / whole;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "Hero attacks: %d (%.1f%% hit, %.1f avg), spells: %d (%.1f avg), potions: %d%n"
+                        + "Monster attacks: %d (%.1f%% dodged, %d absorbed), damage taken: %d, faints: %d, revives: %d, levels gained: %d",
+                heroAttacks, heroHitRate() * 100, averageHeroHit(), spellsCast, averageSpellHit(), potionsUsed,
+                monsterAttacks, heroDodgeRate() * 100, monsterAttacksAbsorbed, damageTaken, faints, revives,
+                levelsGained);
+    }
+}
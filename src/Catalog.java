@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Everything the game reads from its data files: the heroes to choose from,
+ * the three monster pools and the market stock.
+ *
+ * {@link #load()} reads the precompiled {@link CatalogSnapshot} when it is
+ * newer than every text file, and the text files otherwise.
+ */
+public class Catalog {
+
+    public static final String SNAPSHOT_FILE = "catalog.bin";
+
+    public static final String WARRIORS = "Warriors.txt";
+    public static final String SORCERERS = "Sorcerers.txt";
+    public static final String PALADINS = "Paladins.txt";
+    public static final String DRAGONS = "Dragons.txt";
+    public static final String EXOSKELETONS = "Exoskeletons.txt";
+    public static final String SPIRITS = "Spirits.txt";
+    public static final String WEAPONS = "Weaponry.txt";
+    public static final String ARMORS = "Armory.txt";
+    public static final String POTIONS = "Potions.txt";
+    public static final String FIRE_SPELLS = "FireSpells.txt";
+    public static final String ICE_SPELLS = "IceSpells.txt";
+    public static final String LIGHTNING_SPELLS = "LightningSpells.txt";
+
+    /** Every text file the catalog is built from. */
+    public static final String[] DATA_FILES = {
+            WARRIORS, SORCERERS, PALADINS,
+            DRAGONS, EXOSKELETONS, SPIRITS,
+            WEAPONS, ARMORS, POTIONS,
+            FIRE_SPELLS, ICE_SPELLS, LIGHTNING_SPELLS
+    };
+
+    private final List<Hero> heroes;
+    private final List<Monster> dragons;
+    private final List<Monster> exoskeletons;
+    private final List<Monster> spirits;
+    private final List<Weapon> weapons;
+    private final List<Armor> armors;
+    private final List<Potion> potions;
+    private final List<Spell> spells;
+
+    public Catalog(List<Hero> heroes, List<Monster> dragons, List<Monster> exoskeletons,
+                   List<Monster> spirits, List<Weapon> weapons, List<Armor> armors,
+                   List<Potion> potions, List<Spell> spells) {
+        this.heroes = heroes;
+        this.dragons = dragons;
+        this.exoskeletons = exoskeletons;
+        this.spirits = spirits;
+        this.weapons = weapons;
+        this.armors = armors;
+        this.potions = potions;
+        this.spells = spells;
+    }
+
+    // Heroes are Warriors, then Sorcerers, then Paladins; spells are Fire, Ice, Lightning
+    public List<Hero> getHeroes() { return heroes; }
+    public List<Monster> getDragons() { return dragons; }
+    public List<Monster> getExoskeletons() { return exoskeletons; }
+    public List<Monster> getSpirits() { return spirits; }
+    public List<Weapon> getWeapons() { return weapons; }
+    public List<Armor> getArmors() { return armors; }
+    public List<Potion> getPotions() { return potions; }
+    public List<Spell> getSpells() { return spells; }
+
+    // ========= LOADING =========
+
+    /**
+     * The snapshot if it is up to date, otherwise the text files. A snapshot
+     * that can't be read (e.g. written by an older version) is ignored too.
+     */
+    public static Catalog load() throws IOException {
+        if (CatalogSnapshot.isFresh(SNAPSHOT_FILE, DATA_FILES)) {
+            try {
+                return CatalogSnapshot.open(SNAPSHOT_FILE);
+            } catch (IOException e) {
+                GameIO.console().println("Ignoring " + SNAPSHOT_FILE + ": " + e.getMessage());
+            }
+        }
+        return loadText();
+    }
+
+    /**
+     * Starts {@link #load()} on a background thread so the caller can show the
+     * menu meanwhile. Collect the result with {@link #await(Future)}.
+     */
+    public static Future<Catalog> loadAsync() {
+        FutureTask<Catalog> task = new FutureTask<>(Catalog::load);
+        Thread loader = new Thread(task, "catalog-loader");
+        loader.setDaemon(true);
+        loader.start();
+        return task;
+    }
+
+    /**
+     * Parses all twelve text files concurrently on a small pool. Each file
+     * loads into its own list, and the lists are merged in the same order the
+     * files used to be read one by one, so the result doesn't depend on which
+     * file finishes first. If several files fail, the first in that order is
+     * reported.
+     */
+    public static Catalog loadText() throws IOException {
+        int threads = Math.min(DATA_FILES.length, Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "catalog-file-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Future<List<Hero>> warriors = pool.submit(() -> loadFile(WARRIORS, FileLoader.WARRIOR));
+            Future<List<Hero>> sorcerers = pool.submit(() -> loadFile(SORCERERS, FileLoader.SORCERER));
+            Future<List<Hero>> paladins = pool.submit(() -> loadFile(PALADINS, FileLoader.PALADIN));
+            Future<List<Monster>> dragons = pool.submit(() -> loadFile(DRAGONS, FileLoader.DRAGON));
+            Future<List<Monster>> exoskeletons = pool.submit(() -> loadFile(EXOSKELETONS, FileLoader.EXOSKELETON));
+            Future<List<Monster>> spirits = pool.submit(() -> loadFile(SPIRITS, FileLoader.SPIRIT));
+            Future<List<Weapon>> weapons = pool.submit(() -> loadFile(WEAPONS, FileLoader.WEAPON));
+            Future<List<Armor>> armors = pool.submit(() -> loadFile(ARMORS, FileLoader.ARMOR));
+            Future<List<Potion>> potions = pool.submit(() -> loadFile(POTIONS, FileLoader.POTION));
+            Future<List<Spell>> fireSpells = pool.submit(() -> loadFile(FIRE_SPELLS, FileLoader.FIRE_SPELL));
+            Future<List<Spell>> iceSpells = pool.submit(() -> loadFile(ICE_SPELLS, FileLoader.ICE_SPELL));
+            Future<List<Spell>> lightningSpells =
+                    pool.submit(() -> loadFile(LIGHTNING_SPELLS, FileLoader.LIGHTNING_SPELL));
+
+            List<Hero> heroes = new ArrayList<>(await(warriors));
+            heroes.addAll(await(sorcerers));
+            heroes.addAll(await(paladins));
+
+            List<Monster> dragonPool = await(dragons);
+            List<Monster> exoskeletonPool = await(exoskeletons);
+            List<Monster> spiritPool = await(spirits);
+
+            List<Weapon> weaponList = await(weapons);
+            List<Armor> armorList = await(armors);
+            List<Potion> potionList = await(potions);
+            List<Spell> spells = new ArrayList<>(await(fireSpells));
+            spells.addAll(await(iceSpells));
+            spells.addAll(await(lightningSpells));
+
+            return new Catalog(heroes, dragonPool, exoskeletonPool, spiritPool,
+                    weaponList, armorList, potionList, spells);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> List<T> loadFile(String filename, FileLoader.Schema<T> schema) throws IOException {
+        List<T> list = new ArrayList<>();
+        FileLoader.load(filename, schema, list);
+        return list;
+    }
+
+    /** Waits for a background load, rethrowing its IOException as is. */
+    static <T> T await(Future<T> loading) throws IOException {
+        try {
+            return loading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading data files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Build step: parses the text files and writes the binary snapshot.
+     * Usage: compile-catalog [output file]
+     */
+    public static void compileFromCommandLine(String[] args) throws IOException {
+        String output = args.length > 1 ? args[1] : SNAPSHOT_FILE;
+        Catalog catalog = loadText();
+        int bytes = CatalogSnapshot.write(catalog, output);
+        GameIO.console().println("Wrote " + output + " (" + bytes + " bytes): "
+                + catalog.heroes.size() + " heroes, "
+                + (catalog.dragons.size() + catalog.exoskeletons.size() + catalog.spirits.size()) + " monsters, "
+                + (catalog.weapons.size() + catalog.armors.size() + catalog.potions.size() + catalog.spells.size())
+                + " items");
+    }
+}
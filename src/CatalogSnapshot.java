@@ -0,0 +1,326 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Binary, memory-mapped copy of the {@link Catalog}, compiled from the text
+ * files with {@code java Main compile-catalog}.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int magic, int version
+ *   8 lists (heroes, dragons, exoskeletons, spirits, weapons, armors, potions, spells):
+ *       int count, then count ints: file offset of each record
+ *   records: byte kind, then the fields of that kind; strings are an
+ *       unsigned short byte length followed by UTF-8 bytes
+ * </pre>
+ *
+ * Opening only maps the file and reads the list headers. A record is decoded
+ * the first time its index is read and then kept, so a game that never opens
+ * the market never builds a single Weapon.
+ */
+public class CatalogSnapshot {
+
+    private static final int MAGIC = 0x4D484354; // "MHCT"
+    private static final int VERSION = 1;
+    private static final int LIST_COUNT = 8;
+
+    // Record kinds
+    private static final byte WARRIOR = 0;
+    private static final byte SORCERER = 1;
+    private static final byte PALADIN = 2;
+    private static final byte DRAGON = 3;
+    private static final byte EXOSKELETON = 4;
+    private static final byte SPIRIT = 5;
+    private static final byte WEAPON = 6;
+    private static final byte ARMOR = 7;
+    private static final byte POTION = 8;
+    private static final byte FIRE_SPELL = 9;
+    private static final byte ICE_SPELL = 10;
+    private static final byte LIGHTNING_SPELL = 11;
+
+    private CatalogSnapshot() {
+    }
+
+    /** True if the snapshot exists and no text file was modified after it. */
+    public static boolean isFresh(String snapshotFile, String[] dataFiles) {
+        File snapshot = new File(snapshotFile);
+        if (!snapshot.isFile()) return false;
+        long built = snapshot.lastModified();
+        for (String f : dataFiles) {
+            if (new File(f).lastModified() > built) return false;
+        }
+        return true;
+    }
+
+    // ========= READING =========
+
+    /** Maps the snapshot and returns a catalog whose records are decoded on first access. */
+    public static Catalog open(String snapshotFile) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(Paths.get(snapshotFile), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data = mapped; // the mapping stays valid after the channel is closed
+        }
+
+        if (data.limit() < 8 || data.getInt(0) != MAGIC) {
+            throw new IOException(snapshotFile + " is not a catalog snapshot");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException(snapshotFile + " has version " + data.getInt(4) + ", expected " + VERSION);
+        }
+
+        int[] offsets = new int[LIST_COUNT];
+        int[] sizes = new int[LIST_COUNT];
+        int pos = 8;
+        for (int i = 0; i < LIST_COUNT; i++) {
+            if (pos + 4 > data.limit()) throw truncated(snapshotFile);
+            sizes[i] = data.getInt(pos);
+            offsets[i] = pos + 4;
+            pos = offsets[i] + 4 * sizes[i];
+            if (sizes[i] < 0 || pos > data.limit()) throw truncated(snapshotFile);
+        }
+
+        return new Catalog(
+                new LazyList<>(data, offsets[0], sizes[0], Hero.class),
+                new LazyList<>(data, offsets[1], sizes[1], Monster.class),
+                new LazyList<>(data, offsets[2], sizes[2], Monster.class),
+                new LazyList<>(data, offsets[3], sizes[3], Monster.class),
+                new LazyList<>(data, offsets[4], sizes[4], Weapon.class),
+                new LazyList<>(data, offsets[5], sizes[5], Armor.class),
+                new LazyList<>(data, offsets[6], sizes[6], Potion.class),
+                new LazyList<>(data, offsets[7], sizes[7], Spell.class));
+    }
+
+    private static IOException truncated(String snapshotFile) {
+        return new IOException(snapshotFile + " is truncated");
+    }
+
+    /**
+     * Read-only list over one section of the snapshot. Decoding uses absolute
+     * reads only and publishes each record once, so the list can be shared
+     * between threads (the battle simulator draws monsters from many).
+     */
+    private static final class LazyList<T> extends AbstractList<T> implements RandomAccess {
+        private final ByteBuffer data;
+        private final int offsets;
+        private final int size;
+        private final Class<T> type;
+        private final AtomicReferenceArray<T> records;
+
+        LazyList(ByteBuffer data, int offsets, int size, Class<T> type) {
+            this.data = data;
+            this.offsets = offsets;
+            this.size = size;
+            this.type = type;
+            this.records = new AtomicReferenceArray<>(size);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            T record = records.get(index);
+            if (record == null) {
+                record = type.cast(decode(data, data.getInt(offsets + 4 * index)));
+                if (!records.compareAndSet(index, null, record)) {
+                    record = records.get(index); // another thread decoded it first
+                }
+            }
+            return record;
+        }
+    }
+
+    /** Decodes the record at the given position (also used for battle log headers). */
+    static Object decode(ByteBuffer data, int pos) {
+        byte kind = data.get(pos++);
+        int nameLength = data.getShort(pos) & 0xFFFF;
+        byte[] nameBytes = new byte[nameLength];
+        for (int i = 0; i < nameLength; i++) {
+            nameBytes[i] = data.get(pos + 2 + i);
+        }
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        pos += 2 + nameLength;
+
+        switch (kind) {
+            case WARRIOR:
+            case SORCERER:
+            case PALADIN: {
+                int level = data.getInt(pos);
+                int mana = data.getInt(pos + 4);
+                int strength = data.getInt(pos + 8);
+                int dexterity = data.getInt(pos + 12);
+                int agility = data.getInt(pos + 16);
+                int gold = data.getInt(pos + 20);
+                int experience = data.getInt(pos + 24);
+                if (kind == WARRIOR) {
+                    return new Warrior(name, level, mana, strength, dexterity, agility, gold, experience);
+                } else if (kind == SORCERER) {
+                    return new Sorcerer(name, level, mana, strength, dexterity, agility, gold, experience);
+                }
+                return new Paladin(name, level, mana, strength, dexterity, agility, gold, experience);
+            }
+            case DRAGON:
+                return new Dragon(name, data.getInt(pos), data.getInt(pos + 4),
+                        data.getInt(pos + 8), data.getInt(pos + 12));
+            case EXOSKELETON:
+                return new Exoskeleton(name, data.getInt(pos), data.getInt(pos + 4),
+                        data.getInt(pos + 8), data.getInt(pos + 12));
+            case SPIRIT:
+                return new SpiritMonster(name, data.getInt(pos), data.getInt(pos + 4),
+                        data.getInt(pos + 8), data.getInt(pos + 12));
+            case WEAPON:
+                return new Weapon(name, data.getInt(pos), data.getInt(pos + 4),
+                        data.getInt(pos + 8), data.getInt(pos + 12));
+            case ARMOR:
+                return new Armor(name, data.getInt(pos), data.getInt(pos + 4), data.getInt(pos + 8));
+            case POTION: {
+                int attrLength = data.getShort(pos + 12) & 0xFFFF;
+                byte[] attrBytes = new byte[attrLength];
+                for (int i = 0; i < attrLength; i++) {
+                    attrBytes[i] = data.get(pos + 14 + i);
+                }
+                return new Potion(name, data.getInt(pos), data.getInt(pos + 4), data.getInt(pos + 8),
+                        new String(attrBytes, StandardCharsets.UTF_8));
+            }
+            case FIRE_SPELL:
+            case ICE_SPELL:
+            case LIGHTNING_SPELL: {
+                SpellType type = kind == FIRE_SPELL ? SpellType.FIRE
+                        : kind == ICE_SPELL ? SpellType.ICE : SpellType.LIGHTNING;
+                return new Spell(name, data.getInt(pos), data.getInt(pos + 4),
+                        data.getInt(pos + 8), data.getInt(pos + 12), type);
+            }
+            default:
+                throw new IllegalStateException("Unknown record kind " + kind + " in catalog snapshot");
+        }
+    }
+
+    // ========= WRITING =========
+
+    /** Writes the catalog as a snapshot file and returns its size in bytes. */
+    public static int write(Catalog catalog, String snapshotFile) throws IOException {
+        List<?>[] lists = {
+                catalog.getHeroes(), catalog.getDragons(), catalog.getExoskeletons(), catalog.getSpirits(),
+                catalog.getWeapons(), catalog.getArmors(), catalog.getPotions(), catalog.getSpells()
+        };
+
+        int headerSize = 8;
+        for (List<?> list : lists) {
+            headerSize += 4 + 4 * list.size();
+        }
+
+        // Records first, so their offsets are known when the header is written
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        int[][] offsets = new int[LIST_COUNT][];
+        for (int i = 0; i < LIST_COUNT; i++) {
+            offsets[i] = new int[lists[i].size()];
+            for (int j = 0; j < lists[i].size(); j++) {
+                offsets[i][j] = headerSize + records.size();
+                encode(records, lists[i].get(j));
+            }
+        }
+
+        ByteArrayOutputStream fileBytes = new ByteArrayOutputStream(headerSize + records.size());
+        DataOutputStream out = new DataOutputStream(fileBytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        for (int[] listOffsets : offsets) {
+            out.writeInt(listOffsets.length);
+            for (int offset : listOffsets) {
+                out.writeInt(offset);
+            }
+        }
+        recordBytes.writeTo(out);
+        out.flush();
+
+        Files.write(Paths.get(snapshotFile), fileBytes.toByteArray());
+        return fileBytes.size();
+    }
+
+    /** Encodes a hero, monster or item with its base stats (also used for battle log headers). */
+    static void encode(DataOutputStream out, Object record) throws IOException {
+        if (record instanceof Hero) {
+            Hero h = (Hero) record;
+            out.writeByte(h instanceof Warrior ? WARRIOR : h instanceof Sorcerer ? SORCERER : PALADIN);
+            writeString(out, h.getName());
+            out.writeInt(h.getLevel());
+            out.writeInt(h.getMana());
+            out.writeInt(h.getStrength());
+            out.writeInt(h.getDexterity());
+            out.writeInt(h.getAgility());
+            out.writeInt(h.getGold());
+            out.writeInt(h.getExperience());
+        } else if (record instanceof Monster) {
+            Monster m = (Monster) record;
+            out.writeByte(m instanceof Dragon ? DRAGON : m instanceof Exoskeleton ? EXOSKELETON : SPIRIT);
+            writeString(out, m.getName());
+            out.writeInt(m.getLevel());
+            out.writeInt(m.getBaseDamage());
+            out.writeInt(m.getDefense());
+            out.writeInt(m.getDodgePercent());
+        } else if (record instanceof Weapon) {
+            Weapon w = (Weapon) record;
+            out.writeByte(WEAPON);
+            writeString(out, w.getName());
+            out.writeInt(w.getCost());
+            out.writeInt(w.getRequiredLevel());
+            out.writeInt(w.getDamage());
+            out.writeInt(w.getHands());
+        } else if (record instanceof Armor) {
+            Armor a = (Armor) record;
+            out.writeByte(ARMOR);
+            writeString(out, a.getName());
+            out.writeInt(a.getCost());
+            out.writeInt(a.getRequiredLevel());
+            out.writeInt(a.getDamageReduction());
+        } else if (record instanceof Potion) {
+            Potion p = (Potion) record;
+            out.writeByte(POTION);
+            writeString(out, p.getName());
+            out.writeInt(p.getCost());
+            out.writeInt(p.getRequiredLevel());
+            out.writeInt(p.getAmount());
+            writeString(out, p.getAffectedAttributes());
+        } else if (record instanceof Spell) {
+            Spell s = (Spell) record;
+            out.writeByte(s.getType() == SpellType.FIRE ? FIRE_SPELL
+                    : s.getType() == SpellType.ICE ? ICE_SPELL : LIGHTNING_SPELL);
+            writeString(out, s.getName());
+            out.writeInt(s.getCost());
+            out.writeInt(s.getRequiredLevel());
+            out.writeInt(s.getDamage());
+            out.writeInt(s.getManaCost());
+        } else {
+            throw new IllegalArgumentException("Cannot store " + record.getClass().getSimpleName());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Text too long for catalog snapshot: " + s.substring(0, 40) + "...");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * What a line of player input turned out to do, for per-command latency
+ * stats. Input that only moves through menus counts as OTHER.
+ */
+public enum Command {
+    // Map
+    MOVE,
+    INFO,
+    MARKET,
+    QUIT,
+
+    // Market
+    MARKET_MENU,
+    MARKET_BROWSE,
+    BUY,
+    SELL,
+
+    // Battle
+    BATTLE_ATTACK,
+    BATTLE_SPELL,
+    BATTLE_POTION,
+    BATTLE_EQUIP,
+    BATTLE_SKIP,
+    BATTLE_AUTO,
+
+    OTHER
+}
@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The monster pools random encounters are drawn from.
+ * Shared by the interactive game and the battle simulator so both draw
+ * monsters the same way.
+ *
+ * The candidates for every hero level are worked out once, when the table is
+ * built, and each level gets an alias table over them, so drawing a monster
+ * takes constant time however many monsters the data files list.
+ */
+public class EncounterTable {
+
+    private final Bucket[] buckets;
+    private final int lowestLevel;   // level of buckets[0]
+
+    /** Every monster type equally likely, as in the original game. */
+    public EncounterTable(List<Monster> dragonPool, List<Monster> exoskeletonPool, List<Monster> spiritPool) {
+        this(dragonPool, exoskeletonPool, spiritPool, 1.0, 1.0, 1.0);
+    }
+
+    /**
+     * With a rarity weight per monster type: a monster of weight 2 turns up
+     * twice as often as an eligible monster of weight 1. Weights must be positive.
+     */
+    public EncounterTable(List<Monster> dragonPool, List<Monster> exoskeletonPool, List<Monster> spiritPool,
+                          double dragonWeight, double exoskeletonWeight, double spiritWeight) {
+        List<List<Monster>> pools = Arrays.asList(dragonPool, exoskeletonPool, spiritPool);
+        double[] poolWeights = {dragonWeight, exoskeletonWeight, spiritWeight};
+
+        // Flatten in pool order; candidate order (and so the draws) follows it
+        List<Monster> monsters = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (int p = 0; p < pools.size(); p++) {
+            if (!(poolWeights[p] > 0) || Double.isInfinite(poolWeights[p])) {
+                throw new IllegalArgumentException("Rarity weights must be positive: " + poolWeights[p]);
+            }
+            for (Monster m : pools.get(p)) {
+                monsters.add(m);
+                weights.add(poolWeights[p]);
+            }
+        }
+
+        int minLevel = Integer.MAX_VALUE;
+        int maxLevel = Integer.MIN_VALUE;
+        for (Monster m : monsters) {
+            minLevel = Math.min(minLevel, m.getLevel());
+            maxLevel = Math.max(maxLevel, m.getLevel());
+        }
+        if (monsters.isEmpty()) {
+            this.lowestLevel = 1;
+            this.buckets = new Bucket[0];
+            return;
+        }
+
+        // Outside [minLevel - 2, maxLevel + 2] no monster is within ±1 and the
+        // nearest-level fallback always picks the same monster, so queries there
+        // are clamped to the ends of the range
+        this.lowestLevel = Math.min(1, minLevel - 2);
+        int highestLevel = Math.max(1, maxLevel + 2);
+        this.buckets = new Bucket[highestLevel - lowestLevel + 1];
+        for (int level = lowestLevel; level <= highestLevel; level++) {
+            buckets[level - lowestLevel] = buildBucket(level, monsters, weights);
+        }
+    }
+
+    /**
+     * Monsters for one encounter: one monster per hero, matched to the given level.
+     */
+    public List<Monster> monsterGroup(int count, int level, SplittableRandom random) {
+        List<Monster> monsters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            monsters.add(randomMonsterOfLevel(level, random));
+        }
+        return monsters;
+    }
+
+    /**
+     * Pick a monster whose level matches the heroes:
+     *  - If hero level == 1  -> only monsters of level 1
+     *  - Else               -> monsters within ±1 level if possible
+     *  - Neither            -> the monster of the closest level
+     */
+    public Monster randomMonsterOfLevel(int level, SplittableRandom random) {
+        return randomTemplateOfLevel(level, random).copy();
+    }
+
+    /**
+     * Same draw as {@link #randomMonsterOfLevel}, but returns the shared
+     * monster itself, for callers that only read its stats.
+     */
+    public Monster randomTemplateOfLevel(int level, SplittableRandom random) {
+        if (buckets.length == 0) {
+            throw new IllegalStateException("No monsters to draw encounters from");
+        }
+        int index = Math.max(0, Math.min(level - lowestLevel, buckets.length - 1));
+        return buckets[index].sample(random);
+    }
+
+    // ========= LEVEL BUCKETS =========
+
+    /** The candidates for one hero level, by the rules of {@link #randomMonsterOfLevel}. */
+    private static Bucket buildBucket(int level, List<Monster> monsters, List<Double> weights) {
+        List<Monster> candidates = new ArrayList<>();
+        List<Double> candidateWeights = new ArrayList<>();
+        for (int i = 0; i < monsters.size(); i++) {
+            int monsterLevel = monsters.get(i).getLevel();
+            boolean eligible = level == 1
+                    ? monsterLevel == 1                       // level 1 heroes only meet level 1 monsters
+                    : Math.abs(monsterLevel - level) <= 1;    // otherwise ±1 level
+            if (eligible) {
+                candidates.add(monsters.get(i));
+                candidateWeights.add(weights.get(i));
+            }
+        }
+
+        // Fallback: the first monster of the closest level overall
+        if (candidates.isEmpty()) {
+            int best = 0;
+            for (int i = 1; i < monsters.size(); i++) {
+                if (Math.abs(monsters.get(i).getLevel() - level) < Math.abs(monsters.get(best).getLevel() - level)) {
+                    best = i;
+                }
+            }
+            candidates.add(monsters.get(best));
+            candidateWeights.add(weights.get(best));
+        }
+
+        return new Bucket(candidates, candidateWeights);
+    }
+
+    /**
+     * Vose's alias table: column i is taken with probability prob[i], otherwise
+     * its alias. Columns that are always taken skip the second draw, so with
+     * equal weights a draw is exactly one nextInt over the candidates.
+     */
+    private static final class Bucket {
+        private final Monster[] monsters;
+        private final double[] prob;
+        private final int[] alias;
+
+        Bucket(List<Monster> candidates, List<Double> weights) {
+            int n = candidates.size();
+            monsters = candidates.toArray(new Monster[n]);
+            prob = new double[n];
+            alias = new int[n];
+
+            double total = 0;
+            for (double w : weights) total += w;
+
+            // Scale so the average column is 1, then pair each short column with a tall one
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallCount = 0;
+            int largeCount = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights.get(i) * n / total;
+                if (scaled[i] < 1.0) small[smallCount++] = i;
+                else large[largeCount++] = i;
+            }
+            while (smallCount > 0 && largeCount > 0) {
+                int s = small[--smallCount];
+                int l = large[--largeCount];
+                prob[s] = scaled[s];
+                alias[s] = l;
+                scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+                if (scaled[l] < 1.0) small[smallCount++] = l;
+                else large[largeCount++] = l;
+            }
+            // Whatever is left is 1 up to rounding error
+            while (largeCount > 0) prob[large[--largeCount]] = 1.0;
+            while (smallCount > 0) prob[small[--smallCount]] = 1.0;
+        }
+
+        Monster sample(SplittableRandom random) {
+            int i = random.nextInt(monsters.length);
+            if (prob[i] >= 1.0 || random.nextDouble() < prob[i]) {
+                return monsters[i];
+            }
+            return monsters[alias[i]];
+        }
+    }
+}
@@ -1,207 +1,160 @@
 import java.io.*;
 import java.util.List;
-import java.util.StringTokenizer;
 
 public class FileLoader {
 
-    private static BufferedReader readerFor(String filename) throws IOException {
-        return new BufferedReader(new FileReader(filename));
+    /** Builds one object from the current record of a {@link RecordReader}. */
+    public interface RecordMapper<T> {
+        T map(RecordReader record) throws IOException;
     }
 
-    // HEROES --------------------------------------------------
+    /**
+     * Column layout of one data file and how to turn a row into an object.
+     * Rows with fewer fields than there are columns are rejected.
+     */
+    public static class Schema<T> {
+        private final String[] columns;
+        private final RecordMapper<T> mapper;
+
+        public Schema(String[] columns, RecordMapper<T> mapper) {
+            this.columns = columns;
+            this.mapper = mapper;
+        }
 
-    public static void loadWarriors(String filename, List<Hero> heroes) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int mana = Integer.parseInt(st.nextToken());
-                int strength = Integer.parseInt(st.nextToken());
-                int agility = Integer.parseInt(st.nextToken());
-                int dexterity = Integer.parseInt(st.nextToken());
-                int money = Integer.parseInt(st.nextToken());
-                int exp = Integer.parseInt(st.nextToken());
-                heroes.add(new Warrior(name, 1, mana, strength, dexterity, agility, money, exp));
+        public String[] getColumns() { return columns; }
+    }
+
+    // SCHEMAS --------------------------------------------------
+
+    private static final String[] HERO_COLUMNS =
+            {"name", "mana", "strength", "agility", "dexterity", "money", "experience"};
+    private static final String[] MONSTER_COLUMNS =
+            {"name", "level", "damage", "defense", "dodge chance"};
+    private static final String[] SPELL_COLUMNS =
+            {"name", "cost", "level", "damage", "mana cost"};
+
+    // Heroes always start at level 1; the files list agility before dexterity
+    public static final Schema<Hero> WARRIOR = new Schema<>(HERO_COLUMNS, r -> new Warrior(
+            r.text(0), 1, r.integer(1), r.integer(2), r.integer(4), r.integer(3), r.integer(5), r.integer(6)));
+    public static final Schema<Hero> SORCERER = new Schema<>(HERO_COLUMNS, r -> new Sorcerer(
+            r.text(0), 1, r.integer(1), r.integer(2), r.integer(4), r.integer(3), r.integer(5), r.integer(6)));
+    public static final Schema<Hero> PALADIN = new Schema<>(HERO_COLUMNS, r -> new Paladin(
+            r.text(0), 1, r.integer(1), r.integer(2), r.integer(4), r.integer(3), r.integer(5), r.integer(6)));
+
+    public static final Schema<Monster> DRAGON = new Schema<>(MONSTER_COLUMNS, r -> new Dragon(
+            r.text(0), r.integer(1), r.integer(2), r.integer(3), r.integer(4)));
+    public static final Schema<Monster> EXOSKELETON = new Schema<>(MONSTER_COLUMNS, r -> new Exoskeleton(
+            r.text(0), r.integer(1), r.integer(2), r.integer(3), r.integer(4)));
+    public static final Schema<Monster> SPIRIT = new Schema<>(MONSTER_COLUMNS, r -> new SpiritMonster(
+            r.text(0), r.integer(1), r.integer(2), r.integer(3), r.integer(4)));
+
+    public static final Schema<Weapon> WEAPON = new Schema<>(
+            new String[]{"name", "cost", "level", "damage", "hands"},
+            r -> new Weapon(r.text(0), r.integer(1), r.integer(2), r.integer(3), r.integer(4)));
+    public static final Schema<Armor> ARMOR = new Schema<>(
+            new String[]{"name", "cost", "level", "damage reduction"},
+            r -> new Armor(r.text(0), r.integer(1), r.integer(2), r.integer(3)));
+    // Every field after the amount is an affected attribute; parsed into effect bits here
+    public static final Schema<Potion> POTION = new Schema<>(
+            new String[]{"name", "cost", "level", "amount", "attributes..."},
+            r -> {
+                String attributes = r.join(4, '/');
+                int effects;
+                try {
+                    effects = Potion.parseEffects(attributes);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Line " + r.lineNumber() + ": " + e.getMessage());
+                }
+                return new Potion(r.text(0), r.integer(1), r.integer(2), r.integer(3), attributes, effects);
+            });
+
+    public static final Schema<Spell> FIRE_SPELL = spellSchema(SpellType.FIRE);
+    public static final Schema<Spell> ICE_SPELL = spellSchema(SpellType.ICE);
+    public static final Schema<Spell> LIGHTNING_SPELL = spellSchema(SpellType.LIGHTNING);
+
+    private static Schema<Spell> spellSchema(SpellType type) {
+        return new Schema<>(SPELL_COLUMNS, r -> new Spell(
+                r.text(0), r.integer(1), r.integer(2), r.integer(3), r.integer(4), type));
+    }
+
+    // LOADING --------------------------------------------------
+
+    /**
+     * Streams every row of a data file (first line is the header) through the
+     * schema into the list. Works on both the *.txt and files/*.csv layouts.
+     */
+    public static <T> void load(String filename, Schema<T> schema, List<? super T> out) throws IOException {
+        long start = System.nanoTime();
+        try (RecordReader record = new RecordReader(new FileReader(filename))) {
+            record.skipLine(); // header
+            while (record.next()) {
+                if (record.size() < schema.columns.length) {
+                    throw new IOException(filename + " line " + record.lineNumber() + ": expected "
+                            + schema.columns.length + " fields (" + String.join(", ", schema.columns)
+                            + ") but found " + record.size());
+                }
+                try {
+                    out.add(schema.mapper.map(record));
+                } catch (IOException e) {
+                    throw new IOException(filename + ": " + e.getMessage(), e);
+                }
             }
         }
+        long nanos = System.nanoTime() - start;
+        GameMetrics.get().fileLoaded(filename, nanos);
+    }
+
+    // HEROES --------------------------------------------------
+
+    public static void loadWarriors(String filename, List<Hero> heroes) throws IOException {
+        load(filename, WARRIOR, heroes);
     }
 
     public static void loadSorcerers(String filename, List<Hero> heroes) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int mana = Integer.parseInt(st.nextToken());
-                int strength = Integer.parseInt(st.nextToken());
-                int agility = Integer.parseInt(st.nextToken());
-                int dexterity = Integer.parseInt(st.nextToken());
-                int money = Integer.parseInt(st.nextToken());
-                int exp = Integer.parseInt(st.nextToken());
-                heroes.add(new Sorcerer(name, 1, mana, strength, dexterity, agility, money, exp));
-            }
-        }
+        load(filename, SORCERER, heroes);
     }
 
     public static void loadPaladins(String filename, List<Hero> heroes) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int mana = Integer.parseInt(st.nextToken());
-                int strength = Integer.parseInt(st.nextToken());
-                int agility = Integer.parseInt(st.nextToken());
-                int dexterity = Integer.parseInt(st.nextToken());
-                int money = Integer.parseInt(st.nextToken());
-                int exp = Integer.parseInt(st.nextToken());
-                heroes.add(new Paladin(name, 1, mana, strength, dexterity, agility, money, exp));
-            }
-        }
+        load(filename, PALADIN, heroes);
     }
 
     // MONSTERS -------------------------------------------------
 
     public static void loadDragons(String filename, List<Monster> monsters) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int level = Integer.parseInt(st.nextToken());
-                int damage = Integer.parseInt(st.nextToken());
-                int defense = Integer.parseInt(st.nextToken());
-                int dodgeChance = Integer.parseInt(st.nextToken());
-                monsters.add(new Dragon(name, level, damage, defense, dodgeChance));
-            }
-        }
+        load(filename, DRAGON, monsters);
     }
 
     public static void loadExoskeletons(String filename, List<Monster> monsters) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int level = Integer.parseInt(st.nextToken());
-                int damage = Integer.parseInt(st.nextToken());
-                int defense = Integer.parseInt(st.nextToken());
-                int dodgeChance = Integer.parseInt(st.nextToken());
-                monsters.add(new Exoskeleton(name, level, damage, defense, dodgeChance));
-            }
-        }
+        load(filename, EXOSKELETON, monsters);
     }
 
     public static void loadSpiritMonsters(String filename, List<Monster> monsters) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int level = Integer.parseInt(st.nextToken());
-                int damage = Integer.parseInt(st.nextToken());
-                int defense = Integer.parseInt(st.nextToken());
-                int dodgeChance = Integer.parseInt(st.nextToken());
-                monsters.add(new SpiritMonster(name, level, damage, defense, dodgeChance));
-            }
-        }
+        load(filename, SPIRIT, monsters);
     }
 
     // ITEMS ----------------------------------------------------
 
     public static void loadWeapons(String filename, List<Weapon> list) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int cost = Integer.parseInt(st.nextToken());
-                int level = Integer.parseInt(st.nextToken());
-                int damage = Integer.parseInt(st.nextToken());
-                int hands = Integer.parseInt(st.nextToken());
-                list.add(new Weapon(name, cost, level, damage, hands));
-            }
-        }
+        load(filename, WEAPON, list);
     }
 
     public static void loadArmors(String filename, List<Armor> list) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int cost = Integer.parseInt(st.nextToken());
-                int level = Integer.parseInt(st.nextToken());
-                int reduction = Integer.parseInt(st.nextToken());
-                list.add(new Armor(name, cost, level, reduction));
-            }
-        }
+        load(filename, ARMOR, list);
     }
 
     public static void loadPotions(String filename, List<Potion> list) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int cost = Integer.parseInt(st.nextToken());
-                int level = Integer.parseInt(st.nextToken());
-                int amount = Integer.parseInt(st.nextToken());
-                StringBuilder attr = new StringBuilder();
-                while (st.hasMoreTokens()) {
-                    if (attr.length() > 0) attr.append("/");
-                    attr.append(st.nextToken());
-                }
-                list.add(new Potion(name, cost, level, amount, attr.toString()));
-            }
-        }
+        load(filename, POTION, list);
     }
 
     public static void loadFireSpells(String filename, List<Spell> list) throws IOException {
-        loadSpellsWithType(filename, list, SpellType.FIRE);
+        load(filename, FIRE_SPELL, list);
     }
 
     public static void loadIceSpells(String filename, List<Spell> list) throws IOException {
-        loadSpellsWithType(filename, list, SpellType.ICE);
+        load(filename, ICE_SPELL, list);
     }
 
     public static void loadLightningSpells(String filename, List<Spell> list) throws IOException {
-        loadSpellsWithType(filename, list, SpellType.LIGHTNING);
-    }
-
-    private static void loadSpellsWithType(String filename, List<Spell> list, SpellType type) throws IOException {
-        try (BufferedReader br = readerFor(filename)) {
-            String line = br.readLine(); // header
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                StringTokenizer st = new StringTokenizer(line);
-                String name = st.nextToken();
-                int cost = Integer.parseInt(st.nextToken());
-                int level = Integer.parseInt(st.nextToken());
-                int damage = Integer.parseInt(st.nextToken());
-                int manaCost = Integer.parseInt(st.nextToken());
-                list.add(new Spell(name, cost, level, damage, manaCost, type));
-            }
-        }
+        load(filename, LIGHTNING_SPELL, list);
     }
 }
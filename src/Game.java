@@ -1,90 +1,166 @@
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 public class Game {
 
-    // Removed: private final Scanner scanner = new Scanner(System.in);
-    private final List<Hero> availableHeroes = new ArrayList<>();
-    private final List<Hero> party = new ArrayList<>();
+    // Square map size limits; only the viewport around the hero is drawn,
+    // so large maps cost nothing extra on screen
+    private static final int MIN_MAP_SIZE = 5;
+    private static final int MAX_MAP_SIZE = 2000;
+    private static final int ENDLESS_MAP = 0;
+
+    // Prompts and output of this session (the console, or a server connection)
+    private final GameIO io;
 
-    private final List<Monster> dragonPool = new ArrayList<>();
-    private final List<Monster> exoskeletonPool = new ArrayList<>();
-    private final List<Monster> spiritPool = new ArrayList<>();
+    // Data files load in the background while the main menu is up;
+    // the lists below are filled in by awaitData() before the first game
+    private final Future<Catalog> catalog;
 
-    private final List<Weapon> weapons = new ArrayList<>();
-    private final List<Armor> armors = new ArrayList<>();
-    private final List<Potion> potions = new ArrayList<>();
-    private final List<Spell> spells = new ArrayList<>();
+    private List<Hero> availableHeroes;
+    private final List<Hero> party = new ArrayList<>();
+
+    // Market stock, straight from the catalog; indexed on the first market visit
+    private List<Weapon> weapons;
+    private List<Armor> armors;
+    private List<Potion> potions;
+    private List<Spell> spells;
+    private MarketCatalog<Weapon> weaponMarket;
+    private MarketCatalog<Armor> armorMarket;
+    private MarketCatalog<Potion> potionMarket;
+    private MarketCatalog<Spell> spellMarket;
 
     private GameMap map;
+    private MapRenderer renderer;
+    private String status; // one-line message shown under the map on the next frame
     private int heroRow = 0;
     private int heroCol = 0;
-    private final Random random = new Random();
+    private final Long seed; // master seed from the command line, or null for a new one every game
+    private GameRandom random;
+    private EncounterTable encounters;
+    private final BattleLog battleLog = new BattleLog(); // reused by every battle
+    private final String battleLogFile; // where the last battle is saved, or null
+    private final String saveFile;      // autosave file, or null when saving is off
+    private SaveGame save; // autosave of the game in progress
+
+    public Game() {
+        this(Catalog.loadAsync(), null);
+    }
+
+    /** Every new game uses this master seed, so the same inputs replay the same game. */
+    public Game(long seed) {
+        this(Catalog.loadAsync(), seed);
+    }
+
+    public Game(Catalog catalog) {
+        this(CompletableFuture.completedFuture(catalog), null);
+    }
+
+    private Game(Future<Catalog> catalog, Long seed) {
+        this(catalog, seed, GameIO.console(), SaveGame.DEFAULT_FILE, BattleReplay.LAST_BATTLE_FILE);
+    }
+
+    /**
+     * A game played over the given I/O, e.g. one server session. It keeps no
+     * files, since sessions share the working directory.
+     */
+    public Game(Catalog catalog, GameIO io) {
+        this(CompletableFuture.completedFuture(catalog), null, io, null, null);
+    }
 
-    public Game() throws IOException {
-        loadData();
+    private Game(Future<Catalog> catalog, Long seed, GameIO io, String saveFile, String battleLogFile) {
+        this.catalog = catalog;
+        this.seed = seed;
+        this.io = io;
+        this.saveFile = saveFile;
+        this.battleLogFile = battleLogFile;
         // Map is created later in startNewGame() after player chooses size
     }
 
     // ========= DATA LOADING =========
 
-    private void loadData() throws IOException {
-        FileLoader.loadWarriors("Warriors.txt", availableHeroes);
-        FileLoader.loadSorcerers("Sorcerers.txt", availableHeroes);
-        FileLoader.loadPaladins("Paladins.txt", availableHeroes);
-
-        FileLoader.loadDragons("Dragons.txt", dragonPool);
-        FileLoader.loadExoskeletons("Exoskeletons.txt", exoskeletonPool);
-        FileLoader.loadSpiritMonsters("Spirits.txt", spiritPool);
-
-        FileLoader.loadWeapons("Weaponry.txt", weapons);
-        FileLoader.loadArmors("Armory.txt", armors);
-        FileLoader.loadPotions("Potions.txt", potions);
-        FileLoader.loadFireSpells("FireSpells.txt", spells);
-        FileLoader.loadIceSpells("IceSpells.txt", spells);
-        FileLoader.loadLightningSpells("LightningSpells.txt", spells);
+    /** Waits for the catalog the first time it is needed (usually long done by then). */
+    private void awaitData() throws IOException {
+        if (encounters != null) return;
+        Catalog data = Catalog.await(catalog);
+        availableHeroes = data.getHeroes();
+        weapons = data.getWeapons();
+        armors = data.getArmors();
+        potions = data.getPotions();
+        spells = data.getSpells();
+        encounters = new EncounterTable(data.getDragons(), data.getExoskeletons(), data.getSpirits());
     }
 
     // ========= MAIN ENTRY =========
 
-    public void start() {
+    /** Runs the main menu until the player exits, quits or loses. */
+    public void start() throws IOException {
+        try {
+            mainMenu();
+        } catch (QuitException e) {
+            // Q at a prompt, a lost game or closed input; ends this session only
+        } finally {
+            closeSave();
+            io.flush();
+        }
+    }
+
+    private void mainMenu() throws IOException {
         boolean exit = false;
         while (!exit) {
-            GameIO.println("=== Legends: Monsters and Heroes ===");
-            GameIO.println("1) Start Game");
-            GameIO.println("2) How to Play");
-            GameIO.println("3) Exit");
+            io.println("=== Legends: Monsters and Heroes ===");
+            io.println("1) Start Game");
+            io.println("2) Continue Saved Game");
+            io.println("3) How to Play");
+            io.println("4) Exit");
 
-            int choice = GameIO.readIntOrQuit("Choose an option (1-3, or Q to quit): ");
+            int choice = io.readIntOrQuit("Choose an option (1-4, or Q to quit): ");
             switch (choice) {
                 case 1:
                     startNewGame();
                     break;
                 case 2:
-                    printHowToPlay();
+                    continueGame();
                     break;
                 case 3:
-                    GameIO.println("Goodbye!");
+                    printHowToPlay();
+                    break;
+                case 4:
+                    io.println("Goodbye!");
                     exit = true;
                     break;
                 default:
-                    GameIO.println("Invalid choice, please enter 1, 2, or 3.");
+                    io.println("Invalid choice, please enter 1, 2, 3, or 4.");
             }
         }
     }
 
-    private void startNewGame() {
+    private void startNewGame() throws IOException {
+        awaitData();
+        if (saveFile != null && SaveGame.exists(saveFile) && !confirmOverwriteSave()) {
+            io.println("Your saved game is untouched. Choose Continue Saved Game to play it.\n");
+            return;
+        }
+
         // Ask for map size (square: size x size)
-        int size = 0;
-        while (size < 5 || size > 15) {
-            size = GameIO.readIntOrQuit("Enter map size (5-15, or Q to quit): ");
-            if (size < 5 || size > 15) {
-                GameIO.println("Please choose a size between 5 and 15.");
+        int size = -1;
+        while (size != ENDLESS_MAP && (size < MIN_MAP_SIZE || size > MAX_MAP_SIZE)) {
+            size = io.readIntOrQuit("Enter map size (" + MIN_MAP_SIZE + "-" + MAX_MAP_SIZE
+                    + ", 0 for an endless world, or Q to quit): ");
+            if (size != ENDLESS_MAP && (size < MIN_MAP_SIZE || size > MAX_MAP_SIZE)) {
+                io.println("Please choose a size between " + MIN_MAP_SIZE + " and " + MAX_MAP_SIZE
+                        + ", or 0 for an endless world.");
             }
         }
 
-        // Create map with chosen size
-        map = new GameMap(size, size);
+        // Create map with chosen size (chunks are generated as the party explores)
+        random = seed != null ? new GameRandom(seed) : new GameRandom();
+        map = size == ENDLESS_MAP
+                ? GameMap.unbounded(random.mapSeed())
+                : new GameMap(size, size, random.mapSeed());
+        renderer = new MapRenderer(map, io);
+        status = null;
 
         // Reset hero position and party
         heroRow = 0;
@@ -93,51 +169,128 @@ public class Game {
 
         printIntro();
         chooseParty();
-        gameLoop();
-        GameIO.println("Thanks for playing! Returning to main menu...\n");
+        play();
+    }
+
+    /** A new game autosaves over the old one as soon as the party is chosen, so ask first. */
+    private boolean confirmOverwriteSave() {
+        while (true) {
+            String answer = io.readStringOrQuit(
+                    "A saved game exists. Starting a new game will replace it. Continue? (Y/N, or Q to quit): ");
+            if (answer.equalsIgnoreCase("Y")) return true;
+            if (answer.equalsIgnoreCase("N")) return false;
+            io.println("Please answer Y or N.");
+        }
+    }
+
+    /** Picks up the saved game where the party left off. */
+    private void continueGame() throws IOException {
+        awaitData();
+        if (saveFile == null) {
+            io.println("Saved games are not available here.\n");
+            return;
+        }
+        if (!SaveGame.exists(saveFile)) {
+            io.println("No saved game found.\n");
+            return;
+        }
+        SaveGame.State state;
+        try {
+            state = SaveGame.load(saveFile, Catalog.await(catalog));
+        } catch (IOException e) {
+            io.println("Could not load the saved game: " + e.getMessage() + "\n");
+            return;
+        }
+        map = state.getMap();
+        renderer = new MapRenderer(map, io);
+        status = "Welcome back!";
+        heroRow = state.getRow();
+        heroCol = state.getCol();
+        party.clear();
+        party.addAll(state.getParty());
+        random = state.getRandom(); // the saved game's own seed, whatever --seed says
+        play();
+    }
+
+    private void play() {
+        if (saveFile != null) save = new SaveGame(saveFile);
+        autosave();
+        try {
+            gameLoop();
+        } finally {
+            // Also on Q at any prompt; after a defeat the save is already closed and deleted
+            autosave();
+            closeSave();
+        }
+        io.println("Thanks for playing! Returning to main menu...\n");
+    }
+
+    // ========= SAVING =========
+
+    /** Appends what changed since the last save; cheap enough to call after every step that matters. */
+    private void autosave() {
+        if (save == null) return;
+        try {
+            save.save(map, random, heroRow, heroCol, party);
+        } catch (IOException e) {
+            status = "Autosave failed: " + e.getMessage();
+        }
+    }
+
+    private void closeSave() {
+        try {
+            if (save != null) save.close();
+        } catch (IOException e) {
+            io.println("Could not close the saved game: " + e.getMessage());
+        }
+        save = null;
     }
 
     // ========= INFO / HELP =========
 
     private void printIntro() {
-        GameIO.println("\nStarting a new adventure!");
-        GameIO.println("Controls: W/A/S/D to move, I for info, M for market, Q to quit current game");
-        GameIO.println("You can have between 1 and 3 heroes in your party.");
-        GameIO.println("(You can also type Q instead of a number at any prompt to exit completely.)");
+        io.println("\nStarting a new adventure!");
+        io.println("World seed: " + random.getSeed() + " (java Main --seed " + random.getSeed()
+                + " plays this world again)");
+        io.println("Controls: W/A/S/D to move, I for info, M for market, Q to quit current game");
+        io.println("You can have between 1 and 3 heroes in your party.");
+        io.println("(You can also type Q instead of a number at any prompt to exit completely.)");
     }
 
     private void printHowToPlay() {
-        GameIO.println("\n=== How to Play ===");
-        GameIO.println("- You control a party of 1–3 heroes.");
-        GameIO.println("- Each hero has HP, Mana, Strength, Dexterity, Agility, Gold, and Experience.");
-        GameIO.println("");
-        GameIO.println("On the map:");
-        GameIO.println("  H = Your heroes");
-        GameIO.println("  M = Market (buy/sell weapons, armor, potions, spells)");
-        GameIO.println("  - = Common land (you may encounter monsters)");
-        GameIO.println("  X = Inaccessible tile (you cannot step there)");
-        GameIO.println("");
-        GameIO.println("Controls during exploration:");
-        GameIO.println("  W = move up");
-        GameIO.println("  A = move left");
-        GameIO.println("  S = move down");
-        GameIO.println("  D = move right");
-        GameIO.println("  M = enter market if you are on a Market tile");
-        GameIO.println("  I = show party info (stats, equipment, gold)");
-        GameIO.println("  Q = quit the current game and return to the main menu");
-        GameIO.println("");
-        GameIO.println("During battles (in Battle class):");
-        GameIO.println("  1) Attack with your weapon");
-        GameIO.println("  2) Cast a spell (if you have spells and enough mana)");
-        GameIO.println("  3) Use a potion (heal or buff stats)");
-        GameIO.println("  4) Equip a weapon from your inventory");
-        GameIO.println("  5) Equip armor from your inventory");
-        GameIO.println("  0) Skip the hero's turn");
-        GameIO.println("");
-        GameIO.println("Goal:");
-        GameIO.println("- Explore the map, defeat monsters, earn gold and experience,");
-        GameIO.println("  buy better gear from markets, and level up your heroes.");
-        GameIO.println("====================\n");
+        io.println("\n=== How to Play ===");
+        io.println("- You control a party of 1–3 heroes.");
+        io.println("- Each hero has HP, Mana, Strength, Dexterity, Agility, Gold, and Experience.");
+        io.println("");
+        io.println("On the map:");
+        io.println("  H = Your heroes");
+        io.println("  M = Market (buy/sell weapons, armor, potions, spells)");
+        io.println("  - = Common land (you may encounter monsters)");
+        io.println("  X = Inaccessible tile (you cannot step there)");
+        io.println("");
+        io.println("Controls during exploration:");
+        io.println("  W = move up");
+        io.println("  A = move left");
+        io.println("  S = move down");
+        io.println("  D = move right");
+        io.println("  M = enter market if you are on a Market tile");
+        io.println("  I = show party info (stats, equipment, gold)");
+        io.println("  Q = quit the current game and return to the main menu");
+        io.println("");
+        io.println("During battles (in Battle class):");
+        io.println("  1) Attack with your weapon");
+        io.println("  2) Cast a spell (if you have spells and enough mana)");
+        io.println("  3) Use a potion (heal or buff stats)");
+        io.println("  4) Equip a weapon from your inventory");
+        io.println("  5) Equip armor from your inventory");
+        io.println("  0) Skip the hero's turn");
+        io.println("");
+        io.println("Goal:");
+        io.println("- Explore the map, defeat monsters, earn gold and experience,");
+        io.println("  buy better gear from markets, and level up your heroes.");
+        io.println("- The game saves itself after markets, battles and when you quit;");
+        io.println("  choose Continue Saved Game to pick it up again.");
+        io.println("====================\n");
     }
 
     // ========= PARTY SETUP =========
@@ -148,16 +301,16 @@ public class Game {
 
         int maxParty = 0;
         while (maxParty < 1 || maxParty > 3) {
-            maxParty = GameIO.readIntOrQuit("How many heroes in your party (1-3, or Q to quit): ");
+            maxParty = io.readIntOrQuit("How many heroes in your party (1-3, or Q to quit): ");
         }
 
         while (party.size() < maxParty && !selectableHeroes.isEmpty()) {
-            GameIO.println("\nAvailable Heroes:");
+            io.println("\nAvailable Heroes:");
             for (int i = 0; i < selectableHeroes.size(); i++) {
-                System.out.printf("%d) %s%n", i + 1, selectableHeroes.get(i).shortStats());
+                io.printf("%d) %s%n", i + 1, selectableHeroes.get(i).shortStats());
             }
 
-            int idx = GameIO.readIntOrQuit(
+            int idx = io.readIntOrQuit(
                     "Choose hero #" + (party.size() + 1) + " (or Q to quit): "
             ) - 1;
 
@@ -165,12 +318,12 @@ public class Game {
                 Hero baseHero = selectableHeroes.get(idx);
                 Hero chosen = baseHero.copy();
                 party.add(chosen);
-                GameIO.println("Added: " + chosen.getName());
+                io.println("Added: " + chosen.getName());
 
                 // remove from selectable list so it can't be chosen again
                 selectableHeroes.remove(idx);
             } else {
-                GameIO.println("Invalid choice.");
+                io.println("Invalid choice.");
             }
         }
     }
@@ -180,10 +333,11 @@ public class Game {
     private void gameLoop() {
         boolean running = true;
         while (running) {
-            GameIO.println("");
-            map.print(heroRow, heroCol);
+            renderer.render(heroRow, heroCol, status);
+            status = null;
 
-            String cmd = GameIO.readString("Command (W/A/S/D, I, M, Q): ").toUpperCase(Locale.ROOT);
+            String cmd = io.readString("Command (W/A/S/D, I, M, Q): ").toUpperCase(Locale.ROOT);
+            io.command(commandOf(cmd));
             switch (cmd) {
                 case "W": move(-1, 0); break;
                 case "A": move(0, -1); break;
@@ -191,218 +345,262 @@ public class Game {
                 case "D": move(0, 1); break;
                 case "I": printPartyInfo(); break;
                 case "M": enterMarket(); break;
-                case "Q": running = false; break; // back to main menu
-                default: GameIO.println("Unknown command.");
+                case "Q": autosave(); running = false; break; // back to main menu
+                default: status = "Unknown command.";
             }
         }
     }
 
+    private static Command commandOf(String cmd) {
+        switch (cmd) {
+            case "W": case "A": case "S": case "D": return Command.MOVE;
+            case "I": return Command.INFO;
+            case "M": return Command.MARKET;
+            case "Q": return Command.QUIT;
+            default: return Command.OTHER;
+        }
+    }
+
     private void move(int dr, int dc) {
         int nr = heroRow + dr;
         int nc = heroCol + dc;
         if (!map.inBounds(nr, nc)) {
-            GameIO.println("Can't move off the map.");
+            status = "Can't move off the map.";
             return;
         }
         if (map.getTile(nr, nc).getType() == TileType.INACCESSIBLE) {
-            GameIO.println("That tile is inaccessible.");
+            status = "That tile is inaccessible.";
             return;
         }
         heroRow = nr;
         heroCol = nc;
         TileType type = map.getTile(heroRow, heroCol).getType();
+        boolean encountered = type == TileType.COMMON && random.nextStep().nextDouble() < 0.3;
+        GameMetrics.get().step(encountered);
         if (type == TileType.COMMON) {
-            if (random.nextDouble() < 0.3) {
-                GameIO.println("You encountered monsters!");
+            if (encountered) {
+                io.println("You encountered monsters!");
                 startBattle();
+                renderer.invalidate();
             }
         } else if (type == TileType.MARKET) {
-            GameIO.println("You arrived at a market.");
+            status = "You arrived at a market.";
         }
     }
 
     private void printPartyInfo() {
-        GameIO.println("\n--- Party Info ---");
+        io.println("\n--- Party Info ---");
         for (Hero h : party) {
-            GameIO.println(h.toString());
+            io.println(h.toString());
         }
+        renderer.invalidate();
     }
 
     // ========= MARKET LOGIC =========
 
     private void enterMarket() {
         if (map.getTile(heroRow, heroCol).getType() != TileType.MARKET) {
-            GameIO.println("You are not on a market tile.");
+            status = "You are not on a market tile.";
             return;
         }
+        renderer.invalidate();
+        if (weaponMarket == null) buildMarkets();
         boolean inMarket = true;
         while (inMarket) {
-            GameIO.println("\n=== Market ===");
-            GameIO.println("Select a hero to access the market for them.");
-            GameIO.println("They can buy or sell items using their own gold.");
-            GameIO.println("Party:");
+            io.println("\n=== Market ===");
+            io.println("Select a hero to access the market for them.");
+            io.println("They can buy or sell items using their own gold.");
+            io.println("Party:");
             for (int i = 0; i < party.size(); i++) {
-                System.out.printf("%d) %s (Gold: %d)%n",
+                io.printf("%d) %s (Gold: %d)%n",
                         i + 1, party.get(i).getName(), party.get(i).getGold());
             }
-            GameIO.println("0) Exit market");
-            int choice = GameIO.readIntOrQuit("Choose hero number to enter market, or 0 to exit (or Q to quit): ");
+            io.println("0) Exit market");
+            int choice = io.readIntOrQuit("Choose hero number to enter market, or 0 to exit (or Q to quit): ");
             if (choice == 0) {
                 inMarket = false;
+                autosave();
             } else if (choice > 0 && choice <= party.size()) {
                 marketForHero(party.get(choice - 1));
             } else {
-                GameIO.println("Invalid choice.");
+                io.println("Invalid choice.");
             }
         }
     }
 
+    private void buildMarkets() {
+        weaponMarket = new MarketCatalog<>(weapons)
+                .withSort("damage", Comparator.comparingInt(Weapon::getDamage).reversed());
+        armorMarket = new MarketCatalog<>(armors)
+                .withSort("damage reduction", Comparator.comparingInt(Armor::getDamageReduction).reversed());
+        potionMarket = new MarketCatalog<>(potions)
+                .withSort("amount", Comparator.comparingInt(Potion::getAmount).reversed());
+        spellMarket = new MarketCatalog<>(spells)
+                .withSort("damage", Comparator.comparingInt(Spell::getDamage).reversed())
+                .withSort("mana cost", Comparator.comparingInt(Spell::getManaCost));
+    }
+
     private void marketForHero(Hero hero) {
         boolean done = false;
         while (!done) {
-            GameIO.println("\nMarket for " + hero.getName() +
+            io.println("\nMarket for " + hero.getName() +
                     " (Gold: " + hero.getGold() + ")");
-            GameIO.println("Choose an option for this hero:");
-            GameIO.println("1) Buy Weapon");
-            GameIO.println("2) Buy Armor");
-            GameIO.println("3) Buy Potion");
-            GameIO.println("4) Buy Spell");
-            GameIO.println("5) Sell Item");
-            GameIO.println("0) Back to hero selection");
-            int c = GameIO.readIntOrQuit("Choice (or Q to quit): ");
+            io.println("Choose an option for this hero:");
+            io.println("1) Buy Weapon");
+            io.println("2) Buy Armor");
+            io.println("3) Buy Potion");
+            io.println("4) Buy Spell");
+            io.println("5) Sell Item");
+            io.println("0) Back to hero selection");
+            int c = io.readIntOrQuit("Choice (or Q to quit): ");
+            io.command(Command.MARKET_MENU);
             switch (c) {
-                case 1: buyItem(hero, weapons); break;
-                case 2: buyItem(hero, armors); break;
-                case 3: buyItem(hero, potions); break;
-                case 4: buyItem(hero, spells); break;
+                case 1: buyItem(hero, weaponMarket); break;
+                case 2: buyItem(hero, armorMarket); break;
+                case 3: buyItem(hero, potionMarket); break;
+                case 4: buyItem(hero, spellMarket); break;
                 case 5: sellItem(hero); break;
                 case 0: done = true; break;
-                default: GameIO.println("Invalid.");
+                default: io.println("Invalid.");
             }
         }
     }
 
-    private <T extends Item> void buyItem(Hero hero, List<T> list) {
-        GameIO.println("Available items:");
-        for (int i = 0; i < list.size(); i++) {
-            System.out.printf("%d) %s%n", i + 1, list.get(i));
-        }
-        int choice = GameIO.readIntOrQuit("Choose item (0 to cancel, or Q to quit): ");
-        if (choice == 0) return;
-        if (choice < 1 || choice > list.size()) {
-            GameIO.println("Invalid choice.");
-            return;
+    /**
+     * Lists what the hero can use and afford, a page at a time. The player can
+     * page through, change the sort order or switch to the full stock.
+     */
+    private <T extends Item> void buyItem(Hero hero, MarketCatalog<T> market) {
+        boolean showAll = false;
+        int sort = 0;
+        int page = 0;
+        while (true) {
+            List<T> matches = showAll
+                    ? market.all()
+                    : market.usableAndAffordable(hero.getLevel(), hero.getGold());
+            List<T> list = market.sorted(matches, sort);
+            int pages = MarketCatalog.pageCount(list.size());
+            page = Math.min(page, pages - 1);
+
+            io.println((showAll ? "All items" : "Items you can use and afford")
+                    + " (" + list.size() + ", sorted by " + market.sortName(sort)
+                    + ", page " + (page + 1) + "/" + pages + "):");
+            if (list.isEmpty()) {
+                io.println("  (none)");
+            }
+            int first = page * MarketCatalog.PAGE_SIZE;
+            List<T> shown = MarketCatalog.page(list, page);
+            for (int i = 0; i < shown.size(); i++) {
+                io.println(String.format("%d) %s", first + i + 1, shown.get(i)));
+            }
+
+            String input = io.readStringOrQuit("Choose item, N/P = next/previous page, S = sort, "
+                    + (showAll ? "F = only usable and affordable" : "A = show all")
+                    + ", 0 = cancel (or Q to quit): ").toUpperCase(Locale.ROOT);
+            io.command(Command.MARKET_BROWSE);
+            if (input.equals("N")) {
+                if (page < pages - 1) page++;
+            } else if (input.equals("P")) {
+                if (page > 0) page--;
+            } else if (input.equals("S")) {
+                sort = (sort + 1) % market.sortCount();
+                page = 0;
+            } else if (input.equals(showAll ? "F" : "A")) {
+                showAll = !showAll;
+                page = 0;
+            } else {
+                try {
+                    int choice = Integer.parseInt(input);
+                    if (choice == 0) return;
+                    if (choice >= 1 && choice <= list.size()) {
+                        buy(hero, list.get(choice - 1));
+                        return;
+                    }
+                    io.println("Invalid choice.");
+                } catch (NumberFormatException e) {
+                    io.println("Invalid input.");
+                }
+            }
         }
-        Item item = list.get(choice - 1);
+    }
+
+    private void buy(Hero hero, Item item) {
         if (hero.getLevel() < item.getRequiredLevel()) {
-            GameIO.println("Level too low for this item.");
+            io.println("Level too low for this item.");
             return;
         }
         if (hero.getGold() < item.getCost()) {
-            GameIO.println("Not enough gold.");
+            io.println("Not enough gold.");
             return;
         }
         hero.setGold(hero.getGold() - item.getCost());
         hero.getInventory().add(item);
-        GameIO.println(hero.getName() + " bought " + item.getName());
+        io.command(Command.BUY);
+        GameMetrics.get().bought(item.getCost());
+        io.println(hero.getName() + " bought " + item.getName());
     }
 
     private void sellItem(Hero hero) {
-        List<Item> inv = hero.getInventory();
+        Inventory inv = hero.getInventory();
         if (inv.isEmpty()) {
-            GameIO.println("Inventory empty.");
+            io.println("Inventory empty.");
             return;
         }
-        GameIO.println("Inventory:");
-        for (int i = 0; i < inv.size(); i++) {
-            System.out.printf("%d) %s%n", i + 1, inv.get(i));
+        List<Item> items = inv.list();
+        io.println("Inventory:");
+        for (int i = 0; i < items.size(); i++) {
+            io.printf("%d) %s%n", i + 1, inv.describe(items.get(i)));
         }
-        int c = GameIO.readIntOrQuit("Choose item to sell (0 to cancel, or Q to quit): ");
+        int c = io.readIntOrQuit("Choose item to sell (0 to cancel, or Q to quit): ");
         if (c == 0) return;
-        if (c < 1 || c > inv.size()) {
-            GameIO.println("Invalid choice.");
+        if (c < 1 || c > items.size()) {
+            io.println("Invalid choice.");
             return;
         }
-        Item item = inv.remove(c - 1);
+        Item item = items.get(c - 1);
+        io.command(Command.SELL);
+        inv.remove(item);
         int sellPrice = item.getCost() / 2; // items sell for half price
         hero.setGold(hero.getGold() + sellPrice);
-        GameIO.println("Sold " + item.getName() + " for " + sellPrice);
+        GameMetrics.get().sold(sellPrice);
+        io.println("Sold " + item.getName() + " for " + sellPrice);
     }
 
     // ========= BATTLE LOGIC =========
 
     private void startBattle() {
         if (party.stream().allMatch(Hero::isFainted)) {
-            GameIO.println("All heroes already fainted. Game over.");
+            io.println("All heroes already fainted. Game over.");
             return;
         }
         int numHeroes = (int) party.stream().filter(h -> !h.isFainted()).count();
         if (numHeroes == 0) numHeroes = party.size();
         int highestLevel = party.stream().mapToInt(Hero::getLevel).max().orElse(1);
 
-        List<Monster> monsters = new ArrayList<>();
-        for (int i = 0; i < numHeroes; i++) {
-            monsters.add(randomMonsterOfLevel(highestLevel));
-        }
+        List<Monster> monsters = encounters.monsterGroup(numHeroes, highestLevel, random.encounters());
 
-        // Battle no longer needs Scanner from Game; it has its own or uses GameIO
-        Battle battle = new Battle(new Scanner(System.in), party, monsters);
+        Battle battle = new Battle(io, party, monsters, random.nextBattleSeed(), battleLog);
         boolean heroesWon = battle.fight();
-
-        if (!heroesWon) {
-            GameIO.println("The monsters have defeated the heroes... Game over.");
-            System.exit(0);
-        }
-    }
-
-    /**
-     * Pick a monster whose level matches the heroes:
-     *  - If hero level == 1  -> only monsters of level 1
-     *  - Else               -> monsters within ±1 level if possible
-     */
-    private Monster randomMonsterOfLevel(int level) {
-        List<List<Monster>> pools = Arrays.asList(dragonPool, exoskeletonPool, spiritPool);
-        List<Monster> candidates = new ArrayList<>();
-
-        // If heroes are level 1: ONLY allow level-1 monsters
-        if (level == 1) {
-            for (List<Monster> pool : pools) {
-                for (Monster m : pool) {
-                    if (m.getLevel() == 1) {
-                        candidates.add(m);
-                    }
-                }
-            }
-        } else {
-            // For level >= 2: prefer monsters whose level is close (±1)
-            for (List<Monster> pool : pools) {
-                for (Monster m : pool) {
-                    if (Math.abs(m.getLevel() - level) <= 1) {
-                        candidates.add(m);
-                    }
-                }
+        if (battleLogFile != null) {
+            try {
+                battleLog.save(battleLogFile);
+            } catch (IOException e) {
+                io.println("Could not save the battle log: " + e.getMessage());
             }
         }
 
-        // Fallback: if no candidates found, fall back to closest level overall
-        if (candidates.isEmpty()) {
-            Monster best = null;
-            int bestDiff = Integer.MAX_VALUE;
-            for (List<Monster> pool : pools) {
-                for (Monster m : pool) {
-                    int diff = Math.abs(m.getLevel() - level);
-                    if (diff < bestDiff) {
-                        bestDiff = diff;
-                        best = m;
-                    }
+        if (!heroesWon) {
+            io.println("The monsters have defeated the heroes... Game over.");
+            closeSave();
+            if (saveFile != null) {
+                try {
+                    SaveGame.delete(saveFile); // the campaign is over
+                } catch (IOException e) {
+                    io.println("Could not remove the saved game: " + e.getMessage());
                 }
             }
-            // best should never be null if pools are non-empty
-            candidates.add(best);
+            throw new QuitException("Heroes defeated");
         }
-
-        // Pick a random monster from our candidate list and return a copy
-        Monster chosen = candidates.get(random.nextInt(candidates.size()));
-        return chosen.copy();
+        autosave();
     }
 }
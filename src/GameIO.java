@@ -1,13 +1,153 @@
-import java.util.Scanner;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Input and output of one game session.
+ *
+ * The local game uses {@link #console()}; the server gives each connection its
+ * own GameIO over the socket. Output goes to one of three sinks:
+ *  - a buffered stream (the terminal or a socket), flushed whenever input is
+ *    read, so a session writes each screen in one go;
+ *  - nothing, for {@link #headless} runs, where output is not even formatted;
+ *  - memory, for {@link #capture} runs that check what was printed.
+ * Typing Q at a quit prompt, or running out of input, throws
+ * {@link QuitException} and ends this session only.
+ *
+ * Output methods are synchronized because the console is shared by threads
+ * (the server's sessions and its stats dump); a session's own GameIO is only
+ * ever locked by its thread.
+ */
 public class GameIO {
-    private static final Scanner scanner = new Scanner(System.in);
+    private static final int CONSOLE_BUFFER_BYTES = 1 << 16;
+
+    // Unlike System.out this does not flush every line, which matters when output is piped or redirected
+    private static final GameIO CONSOLE = new GameIO(
+            new BufferedReader(new InputStreamReader(System.in)),
+            new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), CONSOLE_BUFFER_BYTES), false),
+            null);
+
+    static {
+        // Whatever was printed after the last prompt still reaches the terminal
+        Runtime.getRuntime().addShutdownHook(new Thread(CONSOLE::flush, "console-flush"));
+    }
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final BufferedReader in;
+    private final PrintStream out;              // null when output is discarded
+    private final ByteArrayOutputStream captured; // the stream behind out when capturing, else null
+    private byte[] line = new byte[256]; // ASCII output is copied here and written as bytes
+
+    // Per-command latency, from reading a line to flushing the output it caused
+    private SessionMetrics metrics;
+    private Command pending; // what the last line did, until its latency is recorded
+    private long readAt;
+
+    /** A session over a pair of streams (e.g. a socket), in UTF-8. */
+    public GameIO(InputStream in, OutputStream out) {
+        this(reader(in), utf8(out), null);
+    }
+
+    private GameIO(BufferedReader in, PrintStream out, ByteArrayOutputStream captured) {
+        this.in = in;
+        this.out = out;
+        this.captured = captured;
+    }
+
+    private static BufferedReader reader(InputStream in) {
+        // Input is short command lines, so a small buffer keeps idle sessions cheap
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 256);
+    }
+
+    private static PrintStream utf8(OutputStream out) {
+        try {
+            return new PrintStream(new BufferedOutputStream(out), false, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // every JVM has UTF-8
+        }
+    }
+
+    /** The terminal the game was started from. */
+    public static GameIO console() {
+        return CONSOLE;
+    }
+
+    /** A session that reads the given input and throws all output away, e.g. to time a game without a terminal. */
+    public static GameIO headless(InputStream in) {
+        return new GameIO(reader(in), null, null);
+    }
+
+    /** A session that reads the given input and keeps its output for {@link #captured()}. */
+    public static GameIO capture(String input) {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        return new GameIO(reader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+                utf8(captured), captured);
+    }
+
+    /** Everything printed so far by a {@link #capture} session, or null for other sessions. */
+    public synchronized String captured() {
+        if (captured == null) return null;
+        out.flush();
+        return new String(captured.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // ========= METRICS =========
+
+    /** Records the latency of each command into the given metrics; null stops it. */
+    public void setMetrics(SessionMetrics metrics) {
+        this.metrics = metrics;
+        this.pending = null;
+    }
+
+    /** Says what the last line of input did. The last call before the output is flushed wins. */
+    public void command(Command command) {
+        if (pending != null) pending = command;
+    }
+
+    private void finishCommand() {
+        if (pending != null) {
+            metrics.record(pending, System.nanoTime() - readAt);
+            pending = null;
+        }
+    }
+
+    // ========= INPUT =========
+
+    /** Next line of input, trimmed. Ends the session when the input is closed. */
+    public String readLine() {
+        flush();
+        String line;
+        try {
+            line = in.readLine();
+        } catch (IOException e) {
+            throw new QuitException("Connection lost: " + e.getMessage());
+        }
+        if (line == null) {
+            throw new QuitException("End of input");
+        }
+        if (metrics != null) {
+            readAt = System.nanoTime();
+            pending = Command.OTHER;
+        }
+        return line.trim();
+    }
 
     // Reads an integer safely (prevents crashes)
-    public static int readInt(String prompt) {
+    public int readInt(String prompt) {
         while (true) {
-            System.out.print(prompt);
-            String input = scanner.nextLine().trim();
+            print(prompt);
+            String input = readLine();
             try {
                 return Integer.parseInt(input);
             } catch (NumberFormatException e) {
@@ -17,14 +157,13 @@ public class GameIO {
     }
 
     // Reads an integer with Quit support (Q)
-    public static int readIntOrQuit(String prompt) {
+    public int readIntOrQuit(String prompt) {
         while (true) {
-            System.out.print(prompt);
-            String input = scanner.nextLine().trim();
+            print(prompt);
+            String input = readLine();
 
             if (input.equalsIgnoreCase("Q")) {
-                println(" Exiting game...");
-                System.exit(0);
+                quit();
             }
             try {
                 return Integer.parseInt(input);
@@ -34,18 +173,62 @@ public class GameIO {
         }
     }
 
+    // Reads a line of text with Quit support (Q)
+    public String readStringOrQuit(String prompt) {
+        String input = readString(prompt);
+        if (input.equalsIgnoreCase("Q")) {
+            quit();
+        }
+        return input;
+    }
+
     // Read text input (commands, names, etc.)
-    public static String readString(String prompt) {
-        System.out.print(prompt);
-        return scanner.nextLine().trim();
+    public String readString(String prompt) {
+        print(prompt);
+        return readLine();
+    }
+
+    private void quit() {
+        command(Command.QUIT);
+        println(" Exiting game...");
+        throw new QuitException("Player quit");
+    }
+
+    // ========= OUTPUT =========
+
+    // Print a message. Takes any CharSequence, so a reused StringBuilder prints without becoming a String.
+    public void println(CharSequence msg) {
+        write(msg, true);
+    }
+
+    public void print(CharSequence msg) {
+        write(msg, false);
+    }
+
+    /** Writes ASCII text straight into the byte stream; anything else goes through the PrintStream's encoder. */
+    private synchronized void write(CharSequence msg, boolean newline) {
+        if (out == null) return;
+        int n = msg.length();
+        int total = newline ? n + NEWLINE.length : n;
+        if (line.length < total) line = new byte[Math.max(total, line.length * 2)];
+        for (int i = 0; i < n; i++) {
+            char c = msg.charAt(i);
+            if (c >= 0x80) {
+                if (newline) out.println(msg); else out.print(msg);
+                return;
+            }
+            line[i] = (byte) c;
+        }
+        if (newline) System.arraycopy(NEWLINE, 0, line, n, NEWLINE.length);
+        out.write(line, 0, total);
     }
 
-    // Print a message
-    public static void println(String msg) {
-        System.out.println(msg);
+    public synchronized void printf(String format, Object... args) {
+        if (out != null) out.printf(format, args);
     }
 
-    public static void print(String msg) {
-        System.out.print(msg);
+    public synchronized void flush() {
+        if (out != null) out.flush();
+        finishCommand();
     }
 }
@@ -1,187 +1,318 @@
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Random;
-
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The world grid, stored as fixed-size chunks that are generated on first visit.
+ *
+ * Each chunk is rolled from its own seed derived from the world seed and the
+ * chunk coordinates, so a chunk that was evicted comes back identical. A map can
+ * be bounded (rows x cols, as chosen in the menu) or endless, in which case only
+ * the most recently used chunks stay in memory.
+ */
 public class GameMap {
-    private final Tile[][] tiles;
+    private static final TileType[] TYPES = TileType.values();
+    private static final byte INACCESSIBLE = (byte) TileType.INACCESSIBLE.ordinal();
+
+    /** Side length of one chunk, in tiles. */
+    private static final int CHUNK_SIZE = 32;
+
+    /** How many chunks an endless world keeps before evicting the least recently used. */
+    private static final int MAX_CACHED_CHUNKS = 64;
+
+    /** Rows/cols value of an endless world. */
+    private static final int UNBOUNDED = -1;
+
     private final int rows;
     private final int cols;
-    private final Random random = new Random();
+    private final long seed;
 
-    // ANSI colors
-    private static final String RESET = "\u001B[0m";
-    private static final String RED   = "\u001B[31m";  // X
-    private static final String GREEN = "\u001B[32m";  // M
-    private static final String CYAN  = "\u001B[96m";  // H
+    // Chunks by packed (chunkRow, chunkCol); each holds row-major TileType ordinals
+    private final LinkedHashMap<Long, byte[]> chunks;
+    private long lastChunkKey;
+    private byte[] lastChunk;
 
     public GameMap(int rows, int cols) {
+        this(rows, cols, new SplittableRandom().nextLong());
+    }
+
+    public GameMap(int rows, int cols, long seed) {
         this.rows = rows;
         this.cols = cols;
-        tiles = new Tile[rows][cols];
-        generateMap();
+        this.seed = seed;
+
+        // A bounded map keeps all of its chunks; an endless one evicts the oldest
+        final int capacity = isUnbounded()
+                ? MAX_CACHED_CHUNKS
+                : chunksFor(rows) * chunksFor(cols);
+        this.chunks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
     }
 
-    private void generateMap() {
-        // Keep generating until all accessible tiles form one connected component
-        boolean ok = false;
-        while (!ok) {
-
-            // 1) Randomly assign tile types
-            for (int r = 0; r < rows; r++) {
-                for (int c = 0; c < cols; c++) {
-                    double roll = random.nextDouble();
-                    TileType type;
-
-                    // 15% INACCESSIBLE, 10% MARKET, 75% COMMON
-                    if (roll < 0.15) {
-                        type = TileType.INACCESSIBLE;
-                    } else if (roll < 0.25) {
-                        type = TileType.MARKET;
-                    } else {
-                        type = TileType.COMMON;
-                    }
+    /** An endless world that stretches in every direction from (0, 0). */
+    public static GameMap unbounded(long seed) {
+        return new GameMap(UNBOUNDED, UNBOUNDED, seed);
+    }
 
-                    tiles[r][c] = new Tile(type);
-                }
-            }
+    public boolean isUnbounded() {
+        return rows == UNBOUNDED;
+    }
 
-            // 2) Make sure starting position is accessible
-            tiles[0][0] = new Tile(TileType.COMMON);
+    /** Number of rows of a bounded map. */
+    public int getRows() { return rows; }
 
-            // 3) Check if all accessible tiles are connected
-            ok = accessibleConnected();
-        }
+    /** Number of columns of a bounded map. */
+    public int getCols() { return cols; }
+
+    /** The map is generated from its seed and size alone, so these three recreate it. */
+    public long getSeed() { return seed; }
+
+    private static int chunksFor(int tiles) {
+        return (tiles + CHUNK_SIZE - 1) / CHUNK_SIZE;
     }
 
     public boolean inBounds(int r, int c) {
+        if (isUnbounded()) return true;
         return r >= 0 && c >= 0 && r < rows && c < cols;
     }
 
     public Tile getTile(int r, int c) {
-        return tiles[r][c];
+        return Tile.of(getType(r, c));
     }
 
-    /**
-     * BFS over accessible tiles (COMMON or MARKET).
-     * Returns true if all such tiles belong to one connected component.
-     */
-    private boolean accessibleConnected() {
-        boolean[][] visited = new boolean[rows][cols];
+    public TileType getType(int r, int c) {
+        int chunkRow = Math.floorDiv(r, CHUNK_SIZE);
+        int chunkCol = Math.floorDiv(c, CHUNK_SIZE);
+        byte[] chunk = chunk(chunkRow, chunkCol);
+        return TYPES[chunk[(r - chunkRow * CHUNK_SIZE) * CHUNK_SIZE + (c - chunkCol * CHUNK_SIZE)]];
+    }
 
-        // 1. Find a starting accessible tile
-        int startR = -1, startC = -1;
-        for (int r = 0; r < rows && startR == -1; r++) {
-            for (int c = 0; c < cols && startC == -1; c++) {
-                if (tiles[r][c].getType() != TileType.INACCESSIBLE) {
-                    startR = r;
-                    startC = c;
-                }
-            }
+    // ========= CHUNKS =========
+
+    private byte[] chunk(int chunkRow, int chunkCol) {
+        long key = ((long) chunkRow << 32) | (chunkCol & 0xFFFFFFFFL);
+        if (lastChunk != null && key == lastChunkKey) {
+            return lastChunk;
+        }
+        byte[] chunk = chunks.get(key);
+        if (chunk == null) {
+            long start = System.nanoTime();
+            chunk = generateChunk(chunkRow, chunkCol);
+            long nanos = System.nanoTime() - start;
+            GameMetrics.get().chunkGenerated(nanos);
+            chunks.put(key, chunk);
         }
+        lastChunkKey = key;
+        lastChunk = chunk;
+        return chunk;
+    }
 
-        // If somehow everything is inaccessible, reject this map
-        if (startR == -1) {
-            return false;
+    /** Number of chunks currently held in memory. */
+    public int loadedChunks() {
+        return chunks.size();
+    }
+
+    /** Per-chunk seed: the world seed mixed with the chunk coordinates. */
+    private long chunkSeed(int chunkRow, int chunkCol) {
+        long z = seed + chunkRow * 0x9E3779B97F4A7C15L + chunkCol * 0xC2B2AE3D27D4EB4FL;
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Builds one chunk whose accessible tiles are connected by construction.
+     *
+     * Tiles are rolled in one pass (15% INACCESSIBLE, 10% MARKET, 75% COMMON).
+     * A tile only becomes INACCESSIBLE if its accessible neighbours stay connected
+     * around it (see {@link #SAFE_TO_BLOCK}); a wall that would cut the chunk is
+     * deferred to the next COMMON tile where it is safe, so the mix still holds.
+     * Tiles not rolled yet count as accessible, so every step keeps the chunk
+     * connected and no retry or BFS is needed.
+     *
+     * Chunks connect to each other through gates: the middle tile of every
+     * chunk edge is always accessible, and the neighbouring chunk's gate sits
+     * right across from it.
+     */
+    private byte[] generateChunk(int chunkRow, int chunkCol) {
+        SplittableRandom random = new SplittableRandom(chunkSeed(chunkRow, chunkCol));
+
+        // Part of the chunk that lies inside the map (less than a full chunk on the far edges)
+        int height = CHUNK_SIZE;
+        int width = CHUNK_SIZE;
+        if (!isUnbounded()) {
+            height = Math.min(CHUNK_SIZE, rows - chunkRow * CHUNK_SIZE);
+            width = Math.min(CHUNK_SIZE, cols - chunkCol * CHUNK_SIZE);
+        }
+        int gateRow = Math.min(CHUNK_SIZE / 2, height - 1);
+        int gateCol = Math.min(CHUNK_SIZE / 2, width - 1);
+        int baseRow = chunkRow * CHUNK_SIZE;
+        int baseCol = chunkCol * CHUNK_SIZE;
+
+        byte[] cells = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        // Tiles outside the map stay blocked; not-yet-rolled tiles must read as accessible
+        Arrays.fill(cells, INACCESSIBLE);
+        for (int r = 0; r < height; r++) {
+            Arrays.fill(cells, r * CHUNK_SIZE, r * CHUNK_SIZE + width, (byte) TileType.COMMON.ordinal());
         }
 
-        // 2. BFS queue setup
-        Queue<int[]> q = new LinkedList<>();
-        q.add(new int[]{startR, startC});
-        visited[startR][startC] = true;
+        int deferredWalls = 0;
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                double roll = random.nextDouble();
+                TileType type;
+
+                // 15% INACCESSIBLE, 10% MARKET, 75% COMMON
+                if (roll < 0.15) {
+                    type = TileType.INACCESSIBLE;
+                } else if (roll < 0.25) {
+                    type = TileType.MARKET;
+                } else {
+                    type = TileType.COMMON;
+                }
 
-        int[] dr = {-1, 1, 0, 0};
-        int[] dc = {0, 0, -1, 1};
+                boolean gate = (r == gateRow && (c == 0 || c == width - 1))
+                        || (c == gateCol && (r == 0 || r == height - 1));
+                boolean start = baseRow + r == 0 && baseCol + c == 0;
 
-        // 3. BFS: visit all reachable accessible tiles
-        while (!q.isEmpty()) {
-            int[] cur = q.poll();
-            int r = cur[0];
-            int c = cur[1];
-
-            for (int k = 0; k < 4; k++) {
-                int nr = r + dr[k];
-                int nc = c + dc[k];
-                if (!inBounds(nr, nc)) continue;
-                if (visited[nr][nc]) continue;
-                if (tiles[nr][nc].getType() == TileType.INACCESSIBLE) continue;
+                // Gates and the starting position must be accessible
+                if (gate || start) {
+                    if (type == TileType.INACCESSIBLE) {
+                        deferredWalls++;
+                        type = TileType.COMMON;
+                    }
+                } else if (type == TileType.INACCESSIBLE && !safeToBlock(cells, r, c)) {
+                    deferredWalls++;
+                    type = TileType.COMMON;
+                } else if (type == TileType.COMMON && deferredWalls > 0 && safeToBlock(cells, r, c)) {
+                    deferredWalls--;
+                    type = TileType.INACCESSIBLE;
+                }
 
-                visited[nr][nc] = true;
-                q.add(new int[]{nr, nc});
+                cells[r * CHUNK_SIZE + c] = (byte) type.ordinal();
             }
         }
+        return cells;
+    }
 
-        // 4. Check that every accessible tile was visited
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                if (tiles[r][c].getType() != TileType.INACCESSIBLE && !visited[r][c]) {
-                    // Found an accessible tile that we could NOT reach by BFS
-                    return false;
+    // Neighbours of a tile in clockwise order, starting at the top-left corner.
+    // Odd indexes are the four edge neighbours, even indexes the corners.
+    private static final int[] RING_DR = {-1, -1, -1, 0, 1, 1, 1, 0};
+    private static final int[] RING_DC = {-1, 0, 1, 1, 1, 0, -1, -1};
+
+    /**
+     * For every open/blocked pattern of the 8 surrounding tiles (bit k = RING[k] is
+     * accessible): true if blocking the centre tile cannot disconnect the map.
+     * That is the case when the accessible edge neighbours all lie in one run of
+     * accessible tiles around the ring, because any path through the centre can
+     * then step around it instead.
+     */
+    private static final boolean[] SAFE_TO_BLOCK = new boolean[256];
+
+    static {
+        for (int mask = 0; mask < 256; mask++) {
+            if (mask == 255) {
+                SAFE_TO_BLOCK[mask] = true;
+                continue;
+            }
+            // Walk the ring starting just after a blocked tile
+            int start = 0;
+            while ((mask & (1 << start)) != 0) start++;
+
+            int runsWithEdge = 0;
+            boolean inRun = false;
+            boolean runHasEdge = false;
+            for (int i = 1; i <= 8; i++) {
+                int k = (start + i) % 8;
+                if ((mask & (1 << k)) != 0) {
+                    inRun = true;
+                    if (k % 2 == 1) runHasEdge = true;
+                } else {
+                    if (inRun && runHasEdge) runsWithEdge++;
+                    inRun = false;
+                    runHasEdge = false;
                 }
             }
+            SAFE_TO_BLOCK[mask] = runsWithEdge <= 1;
         }
-        return true;
     }
 
-    // ========= PRETTY BOX-STYLE PRINT =========
+    /** Tiles outside the chunk count as blocked, so each chunk is connected on its own. */
+    private static boolean safeToBlock(byte[] cells, int r, int c) {
+        int mask = 0;
+        for (int k = 0; k < 8; k++) {
+            int nr = r + RING_DR[k];
+            int nc = c + RING_DC[k];
+            if (nr >= 0 && nc >= 0 && nr < CHUNK_SIZE && nc < CHUNK_SIZE
+                    && cells[nr * CHUNK_SIZE + nc] != INACCESSIBLE) {
+                mask |= 1 << k;
+            }
+        }
+        return SAFE_TO_BLOCK[mask];
+    }
 
-    public void print(int heroRow, int heroCol) {
-        System.out.println("\n=== Map ===");
+    // ========= VERIFICATION =========
 
-        // Build a border line like: +---+---+---+
-        StringBuilder borderBuilder = new StringBuilder();
-        for (int c = 0; c < cols; c++) {
-            borderBuilder.append("+---");
+    /**
+     * BFS over accessible tiles (COMMON or MARKET) of a bounded map.
+     * Returns true if all such tiles belong to one connected component.
+     * Generation guarantees this; the check is kept for verifying maps.
+     */
+    public boolean accessibleConnected() {
+        if (isUnbounded()) {
+            throw new IllegalStateException("Connectivity can only be checked on a bounded map");
         }
-        borderBuilder.append("+");
-        String border = borderBuilder.toString();
-
-        // Top border
-        System.out.println(border);
+        int total = rows * cols;
 
-        for (int r = 0; r < rows; r++) {
-            StringBuilder row = new StringBuilder();
+        // 1. Find a starting accessible tile
+        int start = 0;
+        while (start < total && getType(start / cols, start % cols) == TileType.INACCESSIBLE) start++;
 
-            for (int c = 0; c < cols; c++) {
-                row.append("|");
+        // If somehow everything is inaccessible, reject this map
+        if (start == total) {
+            return false;
+        }
 
-                String symbol; // use String so we can include color codes
+        // 2. BFS over flat indexes: an int array queue and a bitset of visited tiles
+        int[] queue = new int[total];
+        long[] visited = new long[(total + 63) >>> 6];
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        visited[start >>> 6] |= 1L << start;
+        int reached = 1;
 
-                if (r == heroRow && c == heroCol) {
-                    // Hero tile
-                    symbol = CYAN + "H" + RESET;
-                } else {
-                    TileType type = tiles[r][c].getType();
-                    switch (type) {
-                        case INACCESSIBLE:
-                            symbol = RED + "X" + RESET;
-                            break;
-                        case MARKET:
-                            symbol = GREEN + "M" + RESET;
-                            break;
-                        case COMMON:
-                        default:
-                            symbol = " ";
-                            break;
-                    }
-                }
+        // 3. BFS: visit all reachable accessible tiles
+        while (head < tail) {
+            int cur = queue[head++];
+            int r = cur / cols;
+            int c = cur - r * cols;
+
+            for (int k = 1; k < 8; k += 2) {
+                int nr = r + RING_DR[k];
+                int nc = c + RING_DC[k];
+                if (!inBounds(nr, nc)) continue;
+                int next = nr * cols + nc;
+                if ((visited[next >>> 6] & (1L << next)) != 0) continue;
+                if (getType(nr, nc) == TileType.INACCESSIBLE) continue;
 
-                row.append(" ").append(symbol).append(" ");
+                visited[next >>> 6] |= 1L << next;
+                queue[tail++] = next;
+                reached++;
             }
-
-            row.append("|"); // right border
-            System.out.println(row);
-            System.out.println(border); // row separator
         }
 
-        System.out.println("\nLegend:");
-        System.out.println(
-                CYAN + "H" + RESET + " = Hero, " +
-                        GREEN + "M" + RESET + " = Market, " +
-                        RED + "X" + RESET + " = Inaccessible, blank = Common tile"
-        );
-
-        System.out.println("\nControls:");
-        System.out.println("W = Move Up, A = Move Left, S = Move Down, D = Move Right");
-        System.out.println("I = Show Hero Info, M = Enter Market (when on a Market tile), Q = Quit Game");
+        // 4. Every accessible tile must have been reached
+        int accessible = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                if (getType(r, c) != TileType.INACCESSIBLE) accessible++;
+            }
+        }
+        return reached == accessible;
     }
 }
@@ -0,0 +1,224 @@
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Gameplay counters of the whole JVM, over every session: battles, damage by
+ * hero class, steps and encounters, market trade, map chunks and data file
+ * loads.
+ *
+ * The game and the server register the one instance in the platform
+ * MBeanServer, so jconsole or any JMX client can watch them run; it counts
+ * whether registered or not. Counters are LongAdders, so sessions recording
+ * at the same time never wait on each other; reading sums them. Console
+ * battles feed it by subscribing it to their events.
+ */
+public class GameMetrics implements GameMetricsMXBean, BattleListener {
+
+    public static final String OBJECT_NAME = "MonstersAndHeroes:type=GameMetrics";
+
+    private static final String[] HERO_CLASSES = {"Warrior", "Sorcerer", "Paladin", "Other"};
+
+    private static final GameMetrics INSTANCE = new GameMetrics();
+    private static boolean registered;
+
+    private final LongAdder battlesStarted = new LongAdder();
+    private final LongAdder battlesWon = new LongAdder();
+    private final LongAdder battlesLost = new LongAdder();
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder[] damageDealt = adders(HERO_CLASSES.length);
+    private final LongAdder[] damageTaken = adders(HERO_CLASSES.length);
+
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder encounters = new LongAdder();
+    private final LongAdder chunksGenerated = new LongAdder();
+    private final LongAdder chunkNanos = new LongAdder();
+
+    private final LongAdder itemsBought = new LongAdder();
+    private final LongAdder goldSpent = new LongAdder();
+    private final LongAdder itemsSold = new LongAdder();
+    private final LongAdder goldEarned = new LongAdder();
+
+    private final LongAdder filesLoaded = new LongAdder();
+    private final Map<String, Long> fileLoadNanos = new ConcurrentHashMap<>();
+
+    private GameMetrics() {
+    }
+
+    /** The JVM's metrics. */
+    public static GameMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Makes the metrics visible over JMX. Starting the platform MBeanServer
+     * takes a few hundred milliseconds, so this runs on its own daemon thread
+     * rather than delaying whatever records first.
+     */
+    public static void registerInBackground() {
+        Thread t = new Thread(GameMetrics::register, "jmx-register");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static synchronized void register() {
+        if (registered) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            registered = true;
+        } catch (JMException | SecurityException e) {
+            // Still counts; only the JMX view is missing
+        }
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private static int heroClass(Hero h) {
+        if (h instanceof Warrior) return 0;
+        if (h instanceof Sorcerer) return 1;
+        if (h instanceof Paladin) return 2;
+        return 3;
+    }
+
+    // ========= RECORDING =========
+
+    /** The hero moved onto a new tile; encountered is whether monsters attacked there. */
+    public void step(boolean encountered) {
+        steps.increment();
+        if (encountered) encounters.increment();
+    }
+
+    public void chunkGenerated(long nanos) {
+        chunksGenerated.increment();
+        chunkNanos.add(nanos);
+    }
+
+    public void bought(int cost) {
+        itemsBought.increment();
+        goldSpent.add(cost);
+    }
+
+    public void sold(int price) {
+        itemsSold.increment();
+        goldEarned.add(price);
+    }
+
+    public void fileLoaded(String filename, long nanos) {
+        filesLoaded.increment();
+        fileLoadNanos.put(filename, nanos);
+    }
+
+    // ========= BATTLE EVENTS =========
+
+    /** A battle counts as started when its first round begins. */
+    @Override
+    public void round(int number) {
+        if (number == 1) battlesStarted.increment();
+        rounds.increment();
+    }
+
+    @Override
+    public void heroAttack(Hero h, Monster target, int result) {
+        if (result > 0) damageDealt[heroClass(h)].add(result);
+    }
+
+    @Override
+    public void heroSpell(Hero h, Spell s, Monster target, int result) {
+        if (result > 0) damageDealt[heroClass(h)].add(result);
+    }
+
+    @Override
+    public void monsterAttack(Monster m, Hero target, int result) {
+        if (result > 0) damageTaken[heroClass(target)].add(result);
+    }
+
+    @Override
+    public void end(boolean heroesWon) {
+        (heroesWon ? battlesWon : battlesLost).increment();
+    }
+
+    // ========= JMX VIEW =========
+
+    @Override public long getBattlesStarted() { return battlesStarted.sum(); }
+    @Override public long getBattlesWon() { return battlesWon.sum(); }
+    @Override public long getBattlesLost() { return battlesLost.sum(); }
+    @Override public long getRounds() { return rounds.sum(); }
+
+    /** Over started battles, since rounds count for battles abandoned before their end too. */
+    @Override
+    public double getRoundsPerBattle() {
+        return ratio(rounds.sum(), battlesStarted.sum());
+    }
+
+    @Override
+    public Map<String, Long> getDamageDealtByHeroClass() {
+        return byHeroClass(damageDealt);
+    }
+
+    @Override
+    public Map<String, Long> getDamageTakenByHeroClass() {
+        return byHeroClass(damageTaken);
+    }
+
+    private static Map<String, Long> byHeroClass(LongAdder[] adders) {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int i = 0; i < adders.length; i++) map.put(HERO_CLASSES[i], adders[i].sum());
+        return map;
+    }
+
+    @Override public long getSteps() { return steps.sum(); }
+    @Override public long getEncounters() { return encounters.sum(); }
+
+    @Override
+    public double getEncountersPerStep() {
+        return ratio(encounters.sum(), steps.sum());
+    }
+
+    @Override public long getMapChunksGenerated() { return chunksGenerated.sum(); }
+
+    @Override
+    public double getAverageChunkGenerationMicros() {
+        return ratio(chunkNanos.sum(), chunksGenerated.sum()) / 1000;
+    }
+
+    @Override public long getItemsBought() { return itemsBought.sum(); }
+    @Override public long getGoldSpent() { return goldSpent.sum(); }
+    @Override public long getItemsSold() { return itemsSold.sum(); }
+    @Override public long getGoldEarned() { return goldEarned.sum(); }
+
+    @Override public long getFilesLoaded() { return filesLoaded.sum(); }
+
+    @Override
+    public Map<String, Double> getFileLoadMillis() {
+        Map<String, Double> map = new TreeMap<>();
+        for (Map.Entry<String, Long> e : fileLoadNanos.entrySet()) map.put(e.getKey(), e.getValue() / 1e6);
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static double ratio(long part, long whole) {
+        return whole == 0 ? 0 : (double) part / whole;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder a : new LongAdder[]{battlesStarted, battlesWon, battlesLost, rounds, steps, encounters,
+                chunksGenerated, chunkNanos, itemsBought, goldSpent, itemsSold, goldEarned, filesLoaded}) {
+            a.reset();
+        }
+        for (int i = 0; i < HERO_CLASSES.length; i++) {
+            damageDealt[i].reset();
+            damageTaken[i].reset();
+        }
+        fileLoadNanos.clear();
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.Map;
+
+/**
+ * What {@link GameMetrics} shows over JMX, as MonstersAndHeroes:type=GameMetrics.
+ * Totals count from JVM start or the last {@link #reset()}.
+ */
+public interface GameMetricsMXBean {
+
+    // ========= BATTLES =========
+
+    long getBattlesStarted();
+
+    long getBattlesWon();
+
+    long getBattlesLost();
+
+    long getRounds();
+
+    /** Rounds per started battle, including battles still going or abandoned. */
+    double getRoundsPerBattle();
+
+    /** Damage heroes dealt with weapons and spells, by hero class. */
+    Map<String, Long> getDamageDealtByHeroClass();
+
+    /** Damage heroes took from monsters, by hero class. */
+    Map<String, Long> getDamageTakenByHeroClass();
+
+    // ========= EXPLORING =========
+
+    long getSteps();
+
+    long getEncounters();
+
+    double getEncountersPerStep();
+
+    long getMapChunksGenerated();
+
+    double getAverageChunkGenerationMicros();
+
+    // ========= MARKET =========
+
+    long getItemsBought();
+
+    long getGoldSpent();
+
+    long getItemsSold();
+
+    long getGoldEarned();
+
+    // ========= DATA FILES =========
+
+    long getFilesLoaded();
+
+    /** How long the last load of each data file took, in milliseconds. */
+    Map<String, Double> getFileLoadMillis();
+
+    /** Sets every counter back to zero. */
+    void reset();
+}
@@ -0,0 +1,84 @@
+import java.util.SplittableRandom;
+
+/**
+ * All the randomness of one game, derived from a single master seed.
+ *
+ * Each use gets its own stream: the map, the encounter roll and monster
+ * draws of every step, and every battle. A stream's seed is the master seed
+ * mixed with the stream's id (and the step or battle number), so streams
+ * never shift each other: battle 7 plays out the same however many encounter
+ * rolls came before it. The same seed and the same inputs replay the same
+ * game, and a game restored with its step and battle counts carries on where
+ * it was saved.
+ *
+ * The streams are {@link SplittableRandom}s, which are unsynchronized and so
+ * cheap enough for the simulator's inner loops.
+ */
+public class GameRandom {
+
+    // Stream ids
+    private static final long MAP = 1;
+    private static final long ENCOUNTERS = 2;
+    private static final long BATTLES = 3;
+
+    private final long seed;
+    private SplittableRandom encounters;
+    private int steps = 0;
+    private int battles = 0;
+
+    /** A new random master seed. */
+    public GameRandom() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    public GameRandom(long seed) {
+        this(seed, 0, 0);
+    }
+
+    /** A game restored from a save: the next step and battle are the given ones, counting from 0. */
+    public GameRandom(long seed, int steps, int battles) {
+        this.seed = seed;
+        this.steps = steps;
+        this.battles = battles;
+    }
+
+    public long getSeed() { return seed; }
+
+    /** Steps begun so far, i.e. the index of the next step. */
+    public int getSteps() { return steps; }
+
+    /** Battle seeds handed out so far, i.e. the index of the next battle. */
+    public int getBattles() { return battles; }
+
+    /** Seed for the world map. */
+    public long mapSeed() {
+        return derive(seed, MAP, 0);
+    }
+
+    /**
+     * Begins a step onto a new tile and returns its encounter stream; the
+     * n-th step of a game always gets the same one.
+     */
+    public SplittableRandom nextStep() {
+        encounters = new SplittableRandom(derive(seed, ENCOUNTERS, steps++));
+        return encounters;
+    }
+
+    /** The current step's stream: its encounter roll and the monsters drawn for its fight. */
+    public SplittableRandom encounters() {
+        return encounters;
+    }
+
+    /** Seed for the next battle; the n-th battle of a game always gets the same one. */
+    public long nextBattleSeed() {
+        return derive(seed, BATTLES, battles++);
+    }
+
+    /** The master seed mixed with a stream id and index (MurmurHash3's finalizer, as for map chunks). */
+    static long derive(long seed, long stream, long index) {
+        long z = seed + stream * 0x9E3779B97F4A7C15L + index * 0xC2B2AE3D27D4EB4FL;
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many independent games over TCP
+ * (java Main serve [port] [max sessions] [stats seconds]); players connect with
+ * any line-based client such as telnet or nc.
+ *
+ * Every connection gets its own {@link Game} with its own {@link GameIO} over
+ * the socket, running on its own thread. All sessions share one catalog, which
+ * is only read. Quitting, losing or disconnecting ends that session and leaves
+ * the others running. Sessions keep no files, so they can't overwrite each
+ * other's saves.
+ *
+ * Session threads are created with a small stack, since the game's call depth
+ * is shallow, so thousands of idle players cost little memory. Past the
+ * session limit new connections are turned away.
+ *
+ * Every session times its commands into {@link #getMetrics()}, which reports
+ * latency percentiles per command type and the server's throughput.
+ */
+public class GameServer {
+
+    public static final int DEFAULT_PORT = 4040;
+    public static final int DEFAULT_MAX_SESSIONS = 2000;
+    public static final int DEFAULT_STATS_SECONDS = 60;
+
+    private static final long SESSION_STACK_BYTES = 256 * 1024;
+    private static final int IDLE_TIMEOUT_MS = 30 * 60 * 1000; // a session waiting this long on a prompt ends
+
+    private final Catalog catalog;
+    private final Semaphore slots;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong sessionIds = new AtomicLong();
+    private final ServerMetrics metrics = new ServerMetrics();
+    private volatile ServerSocket server;
+
+    public GameServer(Catalog catalog, int maxSessions) {
+        this.catalog = catalog;
+        this.slots = new Semaphore(maxSessions);
+    }
+
+    /** Sessions currently connected. */
+    public int activeSessions() {
+        return activeSessions.get();
+    }
+
+    /** Command latency and throughput of all sessions so far. */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** The port the server listens on (useful when started on port 0). */
+    public int getPort() {
+        ServerSocket s = server;
+        return s == null ? -1 : s.getLocalPort();
+    }
+
+    // ========= ACCEPTING =========
+
+    /** Binds the port. Call {@link #serve()} afterwards to accept players. */
+    public void bind(int port) throws IOException {
+        server = new ServerSocket(port, 512);
+    }
+
+    /** Accepts players until {@link #close()} is called. */
+    public void serve() throws IOException {
+        ServerSocket s = server;
+        while (!s.isClosed()) {
+            Socket client;
+            try {
+                client = s.accept();
+            } catch (SocketException e) {
+                if (s.isClosed()) return; // closed by close()
+                throw e;
+            }
+            startSession(client);
+        }
+    }
+
+    /** Stops accepting players; sessions already running play on. */
+    public void close() throws IOException {
+        ServerSocket s = server;
+        if (s != null) s.close();
+    }
+
+    private void startSession(Socket client) {
+        if (!slots.tryAcquire()) {
+            try (Socket s = client) {
+                OutputStream out = s.getOutputStream();
+                out.write("Server is full, please try again later.\r\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException e) {
+                // the player is gone already
+            }
+            return;
+        }
+        long id = sessionIds.incrementAndGet();
+        Thread thread = new Thread(null, () -> runSession(client, id), "session-" + id, SESSION_STACK_BYTES);
+        thread.setDaemon(true);
+        try {
+            thread.start();
+        } catch (OutOfMemoryError e) {
+            // No more native threads; turn the player away instead of failing the server
+            slots.release();
+            try {
+                client.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+            log("Could not start session " + id + ": " + e.getMessage());
+        }
+    }
+
+    // ========= SESSIONS =========
+
+    private void runSession(Socket client, long id) {
+        activeSessions.incrementAndGet();
+        SessionMetrics sessionMetrics = metrics.openSession(id);
+        try (Socket s = client) {
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(IDLE_TIMEOUT_MS);
+            GameIO io = new GameIO(s.getInputStream(), s.getOutputStream());
+            io.setMetrics(sessionMetrics);
+            new Game(catalog, io).start();
+        } catch (IOException | RuntimeException e) {
+            // A broken session must not take the server down with it
+            log("Session " + id + " ended with an error: " + e);
+        } finally {
+            metrics.closeSession(sessionMetrics);
+            activeSessions.decrementAndGet();
+            slots.release();
+        }
+    }
+
+    /** A server message on the console, flushed at once since the console has no prompts to flush it. */
+    private static void log(String message) {
+        GameIO console = GameIO.console();
+        synchronized (console) {
+            console.println(message);
+            console.flush();
+        }
+    }
+
+    // ========= COMMAND LINE =========
+
+    /** Usage: serve [port] [max sessions] [stats seconds, 0 for none] */
+    public static void runFromCommandLine(String[] args) throws IOException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int maxSessions = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_SESSIONS;
+        int statsSeconds = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_STATS_SECONDS;
+
+        GameServer gameServer = new GameServer(Catalog.load(), maxSessions);
+        gameServer.bind(port);
+        log("Serving games on port " + gameServer.getPort() + " (up to " + maxSessions + " players)");
+        if (statsSeconds > 0) {
+            gameServer.getMetrics().dumpEvery(statsSeconds, GameIO.console());
+        }
+        gameServer.serve();
+    }
+}
@@ -1,6 +1,3 @@
-import java.util.ArrayList;
-import java.util.List;
-
 public abstract class Hero extends Living {
     protected int mana;
     protected int strength;
@@ -8,15 +5,20 @@ public abstract class Hero extends Living {
     protected int agility;
     protected int gold;
     protected int experience;
+    protected int defenseBonus; // flat damage reduction on top of armor, from potions
 
     protected Weapon weapon;
     protected Armor armor;
-    protected final List<Item> inventory = new ArrayList<>();
+    protected final Inventory inventory = new Inventory();
     protected boolean fainted = false;
 
     // whether the hero is currently using their weapon with both hands
     protected boolean usingTwoHands = false;
 
+    // Derived battle stats, worked out again only after gear or stats change
+    private int cachedWeaponDamage = -1;      // -1 = stale
+    private double cachedDodgeChance = -1;    // -1 = stale
+
     public Hero(String name, int level, int mana, int strength, int dexterity,
                 int agility, int gold, int experience) {
         super(name, level);
@@ -28,7 +30,20 @@ public abstract class Hero extends Living {
         this.experience = experience;
     }
 
+    /** An independent hero in the same state: HP, equipment, items and potion bonuses. */
     public abstract Hero copy();
+
+    /** Copies what the constructor doesn't set onto a fresh copy of this hero. Items are shared, being immutable. */
+    protected Hero copyStateTo(Hero copy) {
+        copy.hp = hp;
+        copy.defenseBonus = defenseBonus;
+        copy.weapon = weapon;
+        copy.armor = armor;
+        copy.usingTwoHands = usingTwoHands;
+        copy.fainted = fainted;
+        copy.inventory.addAll(inventory);
+        return copy;
+    }
     protected abstract void applyFavoredStatsOnLevelUp();
 
     public boolean isFainted() { return fainted; }
@@ -43,11 +58,25 @@ public abstract class Hero extends Living {
     public int getGold() { return gold; }
     public void setGold(int gold) { this.gold = gold; }
     public int getExperience() { return experience; }
-    public List<Item> getInventory() { return inventory; }
+    public int getDefenseBonus() { return defenseBonus; }
+    public Inventory getInventory() { return inventory; }
 
     public Weapon getWeapon() { return weapon; }
     public Armor getArmor() { return armor; }
 
+    // ========= STAT CHANGES =========
+    // Used by potions; stats never drop below 0
+
+    public void addStrength(int amount) { strength = Math.max(0, strength + amount); statsChanged(); }
+    public void addDexterity(int amount) { dexterity = Math.max(0, dexterity + amount); }
+    public void addAgility(int amount) { agility = Math.max(0, agility + amount); statsChanged(); }
+    public void addDefense(int amount) { defenseBonus = Math.max(0, defenseBonus + amount); }
+
+    /** Damage taken off each monster hit: the armor's reduction plus any defense bonus. */
+    public int damageReduction() {
+        return (armor != null ? armor.getDamageReduction() : 0) + defenseBonus;
+    }
+
     // expose two-hand flag
     public boolean isUsingTwoHands() {
         return usingTwoHands;
@@ -55,12 +84,20 @@ public abstract class Hero extends Living {
 
     public void setUsingTwoHands(boolean usingTwoHands) {
         this.usingTwoHands = usingTwoHands;
+        statsChanged();
     }
 
     public void equipWeapon(Weapon w) {
         this.weapon = w;
         // when you switch weapons, default back to one-hand usage
         this.usingTwoHands = false;
+        statsChanged();
+    }
+
+    /** Must follow any change to strength, agility, the weapon or the two-hand flag. */
+    protected void statsChanged() {
+        cachedWeaponDamage = -1;
+        cachedDodgeChance = -1;
     }
 
     public void equipArmor(Armor a) {
@@ -72,7 +109,10 @@ public abstract class Hero extends Living {
      * so they don't dodge nearly everything when agility is high.
      */
     public double dodgeChance() {
-        return Math.min(0.30, agility * 0.002);
+        if (cachedDodgeChance < 0) {
+            cachedDodgeChance = Math.min(0.30, agility * 0.002);
+        }
+        return cachedDodgeChance;
     }
 
     /**
@@ -81,6 +121,13 @@ public abstract class Hero extends Living {
      * Also: ensure at least 1 damage so we don't get 0-damage hits.
      */
     public int weaponDamage() {
+        if (cachedWeaponDamage < 0) {
+            cachedWeaponDamage = computeWeaponDamage();
+        }
+        return cachedWeaponDamage;
+    }
+
+    private int computeWeaponDamage() {
         int baseWeaponDmg = 0;
 
         if (weapon != null) {
@@ -110,13 +157,17 @@ public abstract class Hero extends Living {
     /**
      * Experience points to level up = hero_current_level × 10
      * Gold and EXP added, then levelUp() while enough EXP.
+     * Returns how many levels were gained so callers can announce them.
      */
-    public void gainExpAndGold(int expGain, int goldGain) {
+    public int gainExpAndGold(int expGain, int goldGain) {
         experience += expGain;
         gold += goldGain;
+        int levelsGained = 0;
         while (experience >= level * 10) {
             levelUp();
+            levelsGained++;
         }
+        return levelsGained;
     }
 
     private void levelUp() {
@@ -129,8 +180,7 @@ public abstract class Hero extends Living {
 
         // favored stats get extra 5% in subclass
         applyFavoredStatsOnLevelUp();
-
-        System.out.println(name + " leveled up! Now level " + level);
+        statsChanged();
     }
 
     public String shortStats() {
@@ -144,6 +194,7 @@ public abstract class Hero extends Living {
                 String.format(" Exp:%d Weapon:%s Armor:%s",
                         experience,
                         weapon == null ? "None" : weapon.getName(),
-                        armor == null ? "None" : armor.getName());
+                        armor == null ? "None" : armor.getName()) +
+                (defenseBonus > 0 ? " Def:+" + defenseBonus : "");
     }
 }
@@ -0,0 +1,46 @@
+/**
+ * A single decision made for a hero during its battle turn.
+ * Built through the static factories so each kind carries only what it needs.
+ */
+public class HeroAction {
+
+    public enum Kind {
+        ATTACK, CAST_SPELL, USE_POTION, SKIP
+    }
+
+    private static final HeroAction SKIP = new HeroAction(Kind.SKIP, null, null, null);
+
+    private final Kind kind;
+    private final Monster target;
+    private final Spell spell;
+    private final Potion potion;
+
+    private HeroAction(Kind kind, Monster target, Spell spell, Potion potion) {
+        this.kind = kind;
+        this.target = target;
+        this.spell = spell;
+        this.potion = potion;
+    }
+
+    /** A new attack; controllers in a battle loop reuse {@link BattleEngine#attackAction(int)} instead. */
+    public static HeroAction attack(Monster target) {
+        return new HeroAction(Kind.ATTACK, target, null, null);
+    }
+
+    public static HeroAction castSpell(Spell spell, Monster target) {
+        return new HeroAction(Kind.CAST_SPELL, target, spell, null);
+    }
+
+    public static HeroAction usePotion(Potion potion) {
+        return new HeroAction(Kind.USE_POTION, null, null, potion);
+    }
+
+    public static HeroAction skip() {
+        return SKIP;
+    }
+
+    public Kind getKind() { return kind; }
+    public Monster getTarget() { return target; }
+    public Spell getSpell() { return spell; }
+    public Potion getPotion() { return potion; }
+}
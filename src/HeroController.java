@@ -0,0 +1,13 @@
+/**
+ * Decides what a hero does on its turn when a battle runs headless.
+ * Implementations must not block on user input.
+ */
+public interface HeroController {
+
+    /**
+     * Pick the action for one living, non-fainted hero.
+     * Returning an action that cannot be performed (e.g. a spell the hero
+     * cannot afford) makes the hero skip its turn.
+     */
+    HeroAction chooseAction(Hero hero, BattleEngine battle);
+}
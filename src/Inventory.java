@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A hero's items, grouped into stacks of identical items.
+ *
+ * Each stack sits in two linked lists: one over the whole inventory and one
+ * over its item type (weapons, armor, potions, spells), both in the order the
+ * item was first added. A hash map finds the stack of an item, so adding,
+ * checking and using up an item are O(1), and listing the spells only walks
+ * the spells.
+ */
+public class Inventory implements Iterable<Item> {
+
+    // Type buckets
+    private static final int WEAPONS = 0;
+    private static final int ARMOR = 1;
+    private static final int POTIONS = 2;
+    private static final int SPELLS = 3;
+    private static final int OTHER = 4;
+    private static final int BUCKETS = 5;
+
+    private static final class Stack {
+        final Item item;
+        final int bucket;
+        int count;
+        Stack prev, next;           // whole inventory
+        Stack typePrev, typeNext;   // same bucket
+
+        Stack(Item item, int bucket) {
+            this.item = item;
+            this.bucket = bucket;
+        }
+    }
+
+    private final HashMap<Item, Stack> stacks = new HashMap<>();
+    private Stack head, tail;
+    private final Stack[] typeHeads = new Stack[BUCKETS];
+    private final Stack[] typeTails = new Stack[BUCKETS];
+    private int size = 0;
+
+    private static int bucketOf(Item item) {
+        if (item instanceof Weapon) return WEAPONS;
+        if (item instanceof Armor) return ARMOR;
+        if (item instanceof Potion) return POTIONS;
+        if (item instanceof Spell) return SPELLS;
+        return OTHER;
+    }
+
+    private static int bucketOf(Class<? extends Item> type) {
+        if (type == Weapon.class) return WEAPONS;
+        if (type == Armor.class) return ARMOR;
+        if (type == Potion.class) return POTIONS;
+        if (type == Spell.class) return SPELLS;
+        throw new IllegalArgumentException("No inventory bucket for " + type.getSimpleName());
+    }
+
+    // ========= CHANGES =========
+
+    public void add(Item item) {
+        Stack stack = stacks.get(item);
+        if (stack == null) {
+            stack = new Stack(item, bucketOf(item));
+            stacks.put(item, stack);
+            link(stack);
+        }
+        stack.count++;
+        size++;
+    }
+
+    /** Adds every item of the other inventory, keeping its order and stack sizes. */
+    public void addAll(Inventory other) {
+        for (Stack s = other.head; s != null; s = s.next) {
+            Stack stack = stacks.get(s.item);
+            if (stack == null) {
+                stack = new Stack(s.item, s.bucket);
+                stacks.put(s.item, stack);
+                link(stack);
+            }
+            stack.count += s.count;
+            size += s.count;
+        }
+    }
+
+    /** Removes one of the item. Returns false if the hero doesn't have it. */
+    public boolean remove(Item item) {
+        Stack stack = stacks.get(item);
+        if (stack == null) return false;
+        size--;
+        if (--stack.count == 0) {
+            stacks.remove(item);
+            unlink(stack);
+        }
+        return true;
+    }
+
+    private void link(Stack s) {
+        s.prev = tail;
+        if (tail == null) head = s; else tail.next = s;
+        tail = s;
+
+        int b = s.bucket;
+        s.typePrev = typeTails[b];
+        if (typeTails[b] == null) typeHeads[b] = s; else typeTails[b].typeNext = s;
+        typeTails[b] = s;
+    }
+
+    private void unlink(Stack s) {
+        if (s.prev == null) head = s.next; else s.prev.next = s.next;
+        if (s.next == null) tail = s.prev; else s.next.prev = s.prev;
+
+        int b = s.bucket;
+        if (s.typePrev == null) typeHeads[b] = s.typeNext; else s.typePrev.typeNext = s.typeNext;
+        if (s.typeNext == null) typeTails[b] = s.typePrev; else s.typeNext.typePrev = s.typePrev;
+    }
+
+    // ========= QUERIES =========
+
+    public boolean contains(Item item) {
+        return stacks.containsKey(item);
+    }
+
+    /** How many of this item the hero carries. */
+    public int count(Item item) {
+        Stack stack = stacks.get(item);
+        return stack == null ? 0 : stack.count;
+    }
+
+    /** Total number of items, counting every item in a stack. */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** First item of a type (e.g. Potion.class), or null. */
+    public <T extends Item> T first(Class<T> type) {
+        Stack s = typeHeads[bucketOf(type)];
+        return s == null ? null : type.cast(s.item);
+    }
+
+    /**
+     * The next distinct item of the same type after this one, or null. With
+     * {@link #first} this walks a type without allocating an iterator.
+     */
+    public <T extends Item> T next(Class<T> type, T item) {
+        Stack stack = stacks.get(item);
+        if (stack == null || stack.typeNext == null) return null;
+        return type.cast(stack.typeNext.item);
+    }
+
+    /** Distinct items of a type, in the order they were first added. */
+    public <T extends Item> Iterable<T> ofType(Class<T> type) {
+        int bucket = bucketOf(type);
+        return () -> new StackIterator<>(typeHeads[bucket], true, type);
+    }
+
+    /** Distinct items of a type as a new list, for numbered menus. */
+    public <T extends Item> List<T> listOf(Class<T> type) {
+        List<T> list = new ArrayList<>();
+        for (T item : ofType(type)) list.add(item);
+        return list;
+    }
+
+    /** All distinct items as a new list, for numbered menus. */
+    public List<Item> list() {
+        List<Item> list = new ArrayList<>();
+        for (Item item : this) list.add(item);
+        return list;
+    }
+
+    /** Distinct items, in the order they were first added. */
+    @Override
+    public Iterator<Item> iterator() {
+        return new StackIterator<>(head, false, Item.class);
+    }
+
+    /** Menu text for an item: its description, with the stack size if more than one. */
+    public String describe(Item item) {
+        int n = count(item);
+        return n > 1 ? item + " x" + n : item.toString();
+    }
+
+    private static final class StackIterator<T> implements Iterator<T> {
+        private Stack next;
+        private final boolean sameType;
+        private final Class<T> type;
+
+        StackIterator(Stack first, boolean sameType, Class<T> type) {
+            this.next = first;
+            this.sameType = sameType;
+            this.type = type;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            Stack s = next;
+            next = sameType ? s.typeNext : s.next;
+            return type.cast(s.item);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (Stack s = head; s != null; s = s.next) {
+            if (s != head) sb.append(", ");
+            sb.append(describe(s.item));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram in microseconds, bucketed like HdrHistogram: values below
+ * 32 us get a bucket each, and every power of two above that is split into 32
+ * buckets, so a value is never more than 1/32 (about 3%) below the top of its
+ * bucket. Values up to about 70 minutes fit; larger ones land in the top bucket.
+ *
+ * Made for one recording thread (a session): a record is a few plain reads and
+ * ordered writes, with no locks or CAS. Any thread may read a histogram or add
+ * it into another, and adding is safe from several threads at once.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_MAGNITUDE = 31;
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) Math.max(0, micros);
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude > MAX_MAGNITUDE) return BUCKETS - 1;
+        int sub = (int) (micros >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** Largest value that falls into the bucket. */
+    static long highestInBucket(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int magnitude = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long lowest = (1L << magnitude) | ((long) sub << (magnitude - SUB_BITS));
+        return lowest + (1L << (magnitude - SUB_BITS)) - 1;
+    }
+
+    // ========= RECORDING =========
+
+    /** Records one value. Only one thread may record into a histogram. */
+    public void record(long micros) {
+        int b = bucketOf(micros);
+        counts.lazySet(b, counts.get(b) + 1);
+        count.lazySet(count.get() + 1);
+        sum.lazySet(sum.get() + micros);
+        if (micros > max.get()) max.lazySet(micros);
+    }
+
+    /** Adds every value of the other histogram to this one. */
+    public void add(LatencyHistogram other) {
+        for (int b = 0; b < BUCKETS; b++) {
+            long n = other.counts.get(b);
+            if (n != 0) counts.addAndGet(b, n);
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        max.accumulateAndGet(otherMax, Math::max);
+    }
+
+    // ========= QUERIES =========
+
+    public long count() { return count.get(); }
+
+    public long max() { return max.get(); }
+
+    public double mean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * The value below or at which the given percent of values fall (e.g. 99.9),
+     * as the top of its bucket. 0 when empty.
+     */
+    public long percentile(double percent) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            snapshot[b] = counts.get(b);
+            total += snapshot[b];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percent / 100.0 * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += snapshot[b];
+            if (seen >= rank) return Math.min(highestInBucket(b), max.get());
+        }
+        return max.get();
+    }
+}
@@ -3,10 +3,38 @@ import java.io.IOException;
 public class Main {
     public static void main(String[] args) {
         try {
-            Game game = new Game();
+            if (args.length > 0 && args[0].equalsIgnoreCase("simulate")) {
+                BattleSimulator.runFromCommandLine(args);
+                return;
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("serve")) {
+                GameMetrics.registerInBackground();
+                GameServer.runFromCommandLine(args);
+                return;
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("replay")) {
+                BattleReplay.runFromCommandLine(args);
+                return;
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("compile-catalog")) {
+                Catalog.compileFromCommandLine(args);
+                return;
+            }
+            GameMetrics.registerInBackground();
+            Game game;
+            if (args.length > 1 && args[0].equalsIgnoreCase("--seed")) {
+                try {
+                    game = new Game(Long.parseLong(args[1]));
+                } catch (NumberFormatException e) {
+                    GameIO.console().println("Not a seed: " + args[1]);
+                    return;
+                }
+            } else {
+                game = new Game();
+            }
             game.start();
         } catch (IOException e) {
-            System.out.println("Error loading data files: " + e.getMessage());
+            GameIO.console().println("Error loading data files: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
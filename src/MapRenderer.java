@@ -0,0 +1,236 @@
+/**
+ * Draws the map viewport around the hero in the same box style as before,
+ * but only redraws what changed.
+ *
+ * The first frame (and any frame after {@link #invalidate()}) is printed in full.
+ * Later frames move the cursor back into the previous frame and rewrite just the
+ * tiles, position line and status line that changed, then clear everything below
+ * the status line so the next prompt starts clean. Each frame is a single write.
+ *
+ * Incremental frames rely on nothing else being printed since the last frame
+ * except the command prompt and the player's Enter, so callers must invalidate
+ * after battles, markets or anything else that prints.
+ */
+public class MapRenderer {
+
+    // ANSI colors and cursor control
+    private static final String RESET = "\u001B[0m";
+    private static final String RED   = "\u001B[31m";  // X
+    private static final String GREEN = "\u001B[32m";  // M
+    private static final String CYAN  = "\u001B[96m";  // H
+    private static final String CSI   = "\u001B[";
+
+    /** Largest viewport side, in tiles. */
+    private static final int VIEW_SIZE = 15;
+
+    private static final String[] FOOTER = {
+            "",
+            "Legend:",
+            CYAN + "H" + RESET + " = Hero, " +
+                    GREEN + "M" + RESET + " = Market, " +
+                    RED + "X" + RESET + " = Inaccessible, blank = Common tile",
+            "",
+            "Controls:",
+            "W = Move Up, A = Move Left, S = Move Down, D = Move Right",
+            "I = Show Hero Info, M = Enter Market (when on a Market tile), Q = Quit Game",
+            ""
+    };
+
+    private final GameMap map;
+    private final GameIO io;
+    private final int viewRows;
+    private final int viewCols;
+    private final String border;
+
+    // Frame layout, as line offsets from the "=== Map ===" title
+    private final int positionLine;   // -1 when the map is bounded (no position line)
+    private final int statusLine;
+
+    // What is on screen now
+    private final char[] shown;
+    private final String[] rowStrings;
+    private String shownPosition;
+    private String shownStatus;
+    private boolean valid = false;
+
+    public MapRenderer(GameMap map, GameIO io) {
+        this.map = map;
+        this.io = io;
+        this.viewRows = map.isUnbounded() ? VIEW_SIZE : Math.min(VIEW_SIZE, map.getRows());
+        this.viewCols = map.isUnbounded() ? VIEW_SIZE : Math.min(VIEW_SIZE, map.getCols());
+        this.shown = new char[viewRows * viewCols];
+        this.rowStrings = new String[viewRows];
+
+        // Build a border line like: +---+---+---+
+        StringBuilder borderBuilder = new StringBuilder();
+        for (int c = 0; c < viewCols; c++) {
+            borderBuilder.append("+---");
+        }
+        borderBuilder.append("+");
+        this.border = borderBuilder.toString();
+
+        int afterGrid = 2 + 2 * viewRows;
+        this.positionLine = map.isUnbounded() ? afterGrid : -1;
+        this.statusLine = afterGrid + (map.isUnbounded() ? 1 : 0) + FOOTER.length;
+    }
+
+    /** Forces the next frame to be printed in full, below whatever was printed since. */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Draws the viewport around the hero, with an optional one-line status
+     * message (null for none) under the controls.
+     */
+    public void render(int heroRow, int heroCol, String status) {
+        if (status == null) status = "";
+
+        // Viewport: centred on the hero, kept inside a bounded map
+        int top = heroRow - viewRows / 2;
+        int left = heroCol - viewCols / 2;
+        if (!map.isUnbounded()) {
+            top = Math.max(0, Math.min(top, map.getRows() - viewRows));
+            left = Math.max(0, Math.min(left, map.getCols() - viewCols));
+        }
+
+        char[] frame = new char[viewRows * viewCols];
+        for (int r = 0; r < viewRows; r++) {
+            for (int c = 0; c < viewCols; c++) {
+                int mapRow = top + r;
+                int mapCol = left + c;
+                frame[r * viewCols + c] = (mapRow == heroRow && mapCol == heroCol)
+                        ? 'H'
+                        : symbolFor(map.getType(mapRow, mapCol));
+            }
+        }
+        String position = "Position: row " + heroRow + ", col " + heroCol;
+
+        StringBuilder out = new StringBuilder();
+        if (valid) {
+            appendChanges(out, frame, position, status);
+        } else {
+            appendFullFrame(out, frame, position, status);
+        }
+
+        System.arraycopy(frame, 0, shown, 0, frame.length);
+        shownPosition = position;
+        shownStatus = status;
+        valid = true;
+
+        io.print(out.toString());
+        io.flush();
+    }
+
+    private static char symbolFor(TileType type) {
+        switch (type) {
+            case INACCESSIBLE:
+                return 'X';
+            case MARKET:
+                return 'M';
+            case COMMON:
+            default:
+                return ' ';
+        }
+    }
+
+    private static void appendSymbol(StringBuilder out, char symbol) {
+        switch (symbol) {
+            case 'H':
+                out.append(CYAN).append('H').append(RESET);
+                break;
+            case 'X':
+                out.append(RED).append('X').append(RESET);
+                break;
+            case 'M':
+                out.append(GREEN).append('M').append(RESET);
+                break;
+            default:
+                out.append(symbol);
+        }
+    }
+
+    // ========= FULL FRAME =========
+
+    private void appendFullFrame(StringBuilder out, char[] frame, String position, String status) {
+        out.append("\n\n=== Map ===\n");
+        out.append(border).append('\n');
+        for (int r = 0; r < viewRows; r++) {
+            out.append(rowString(frame, r)).append('\n');
+            out.append(border).append('\n'); // row separator
+        }
+        if (positionLine >= 0) {
+            out.append(position).append('\n');
+        }
+        for (String line : FOOTER) {
+            out.append(line).append('\n');
+        }
+        out.append(status).append('\n');
+    }
+
+    /** Row text with color codes, reused from the last frame when the row is unchanged. */
+    private String rowString(char[] frame, int r) {
+        int from = r * viewCols;
+        boolean same = rowStrings[r] != null;
+        for (int c = 0; same && c < viewCols; c++) {
+            same = frame[from + c] == shown[from + c];
+        }
+        if (same) return rowStrings[r];
+
+        StringBuilder row = new StringBuilder();
+        for (int c = 0; c < viewCols; c++) {
+            row.append("| ");
+            appendSymbol(row, frame[from + c]);
+            row.append(' ');
+        }
+        row.append('|'); // right border
+        rowStrings[r] = row.toString();
+        return rowStrings[r];
+    }
+
+    // ========= INCREMENTAL FRAME =========
+
+    /**
+     * Rewrites only what changed. The cursor starts at column 1 of the line
+     * below the prompt, i.e. statusLine + 2, and all moves are relative so it
+     * doesn't matter where on the screen the frame ended up.
+     */
+    private void appendChanges(StringBuilder out, char[] frame, String position, String status) {
+        int cursorLine = statusLine + 2;
+
+        for (int r = 0; r < viewRows; r++) {
+            boolean rowChanged = false;
+            for (int c = 0; c < viewCols; c++) {
+                int i = r * viewCols + c;
+                if (frame[i] == shown[i]) continue;
+                rowChanged = true;
+                cursorLine = moveTo(out, cursorLine, 2 + 2 * r, 3 + 4 * c);
+                appendSymbol(out, frame[i]);
+            }
+            if (rowChanged) rowStrings[r] = null;
+        }
+
+        if (positionLine >= 0 && !position.equals(shownPosition)) {
+            cursorLine = moveTo(out, cursorLine, positionLine, 1);
+            out.append(CSI).append("2K").append(position);
+        }
+        if (!status.equals(shownStatus)) {
+            cursorLine = moveTo(out, cursorLine, statusLine, 1);
+            out.append(CSI).append("2K").append(status);
+        }
+
+        // Leave the cursor where the next prompt goes and clear the old prompt
+        moveTo(out, cursorLine, statusLine + 1, 1);
+        out.append(CSI).append('J');
+    }
+
+    private static int moveTo(StringBuilder out, int fromLine, int toLine, int column) {
+        if (toLine < fromLine) {
+            out.append(CSI).append(fromLine - toLine).append('A');
+        } else if (toLine > fromLine) {
+            out.append(CSI).append(toLine - fromLine).append('B');
+        }
+        out.append(CSI).append(column).append('G');
+        return toLine;
+    }
+}
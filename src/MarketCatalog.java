@@ -0,0 +1,172 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Market stock of one kind of item, indexed for "what can this hero use and
+ * afford".
+ *
+ * For every distinct required level L the index keeps the items of level <= L
+ * sorted by cost. A query finds the hero's level and then the gold limit by
+ * binary search and returns that prefix as a view, so it costs O(log n) no
+ * matter how many items the catalog has. Other orders (damage, mana cost, ...)
+ * sort only the matching items.
+ */
+public class MarketCatalog<T extends Item> {
+
+    /** Items shown per page in the market. */
+    public static final int PAGE_SIZE = 10;
+
+    private final List<T> items;      // catalog order
+    private final int[] levels;       // distinct required levels, ascending
+    private final int[][] byCost;     // byCost[k]: indexes of items with level <= levels[k], cheapest first
+    private final int[][] costs;      // costs[k][i] = cost of byCost[k][i]
+
+    private final List<String> sortNames = new ArrayList<>();
+    private final List<Comparator<? super T>> sortOrders = new ArrayList<>();
+
+    public MarketCatalog(List<T> items) {
+        this.items = items;
+        int n = items.size();
+
+        // Item indexes by level, ties by cost then catalog order
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> items.get(i).getRequiredLevel())
+                .thenComparingInt(i -> items.get(i).getCost())
+                .thenComparingInt(i -> i));
+
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || level(order[i]) != level(order[i - 1])) distinct++;
+        }
+        levels = new int[distinct];
+        byCost = new int[distinct][];
+        costs = new int[distinct][];
+
+        // Each prefix is the previous one merged with the next level's items
+        int[] previous = new int[0];
+        int k = 0;
+        for (int start = 0; start < n; k++) {
+            int end = start;
+            while (end < n && level(order[end]) == level(order[start])) end++;
+
+            int[] merged = new int[previous.length + (end - start)];
+            int a = 0;
+            int b = start;
+            for (int m = 0; m < merged.length; m++) {
+                boolean takePrevious = b == end
+                        || (a < previous.length && before(previous[a], order[b]));
+                merged[m] = takePrevious ? previous[a++] : order[b++];
+            }
+
+            levels[k] = level(order[start]);
+            byCost[k] = merged;
+            costs[k] = new int[merged.length];
+            for (int m = 0; m < merged.length; m++) {
+                costs[k][m] = items.get(merged[m]).getCost();
+            }
+            previous = merged;
+            start = end;
+        }
+
+        sortNames.add("price");
+        sortOrders.add(null); // query results are already cheapest first
+    }
+
+    private int level(int index) {
+        return items.get(index).getRequiredLevel();
+    }
+
+    /** Cheapest first, ties in catalog order. */
+    private boolean before(int x, int y) {
+        int cx = items.get(x).getCost();
+        int cy = items.get(y).getCost();
+        return cx < cy || (cx == cy && x < y);
+    }
+
+    /** Adds a sort order the market can offer besides price. */
+    public MarketCatalog<T> withSort(String name, Comparator<? super T> order) {
+        sortNames.add(name);
+        sortOrders.add(order);
+        return this;
+    }
+
+    public int sortCount() { return sortNames.size(); }
+    public String sortName(int sort) { return sortNames.get(sort); }
+
+    // ========= QUERIES =========
+
+    /** Items of at most the given level and cost, cheapest first. O(log n). */
+    public List<T> usableAndAffordable(int level, int gold) {
+        int k = upperBound(levels, levels.length, level) - 1;
+        if (k < 0) return Collections.emptyList();
+        return new IndexView(byCost[k], upperBound(costs[k], costs[k].length, gold));
+    }
+
+    /** Every item regardless of level and cost, cheapest first. */
+    public List<T> all() {
+        if (levels.length == 0) return Collections.emptyList();
+        int last = levels.length - 1;
+        return new IndexView(byCost[last], byCost[last].length);
+    }
+
+    /** The items in the given sort order (0 = price, as returned by the queries). */
+    public List<T> sorted(List<T> matches, int sort) {
+        Comparator<? super T> order = sortOrders.get(sort);
+        if (order == null) return matches;
+        List<T> copy = new ArrayList<>(matches);
+        copy.sort(order); // stable, so equal items stay cheapest first
+        return copy;
+    }
+
+    public static int pageCount(int size) {
+        return Math.max(1, (size + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    /** One page of a result list (page 0 is the first). */
+    public static <E> List<E> page(List<E> list, int page) {
+        int from = Math.min(list.size(), page * PAGE_SIZE);
+        return list.subList(from, Math.min(list.size(), from + PAGE_SIZE));
+    }
+
+    /** Number of values in a[0, length) that are <= key, for an ascending array. */
+    private static int upperBound(int[] a, int length, int key) {
+        int lo = 0;
+        int hi = length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Read-only list over a prefix of one of the index arrays. */
+    private final class IndexView extends AbstractList<T> implements RandomAccess {
+        private final int[] indexes;
+        private final int size;
+
+        IndexView(int[] indexes, int size) {
+            this.indexes = indexes;
+            this.size = size;
+        }
+
+        @Override
+        public T get(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+            }
+            return items.get(indexes[i]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
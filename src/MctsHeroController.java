@@ -0,0 +1,303 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Automatic player that picks each hero action by Monte Carlo tree search.
+ *
+ * Every search iteration copies the battle, plays the rest of the round and
+ * following rounds on the copy, and scores how it ended. Decisions inside the
+ * tree are chosen by UCB1; past the tree {@link SimpleHeroController} plays the
+ * heroes. The battle is random, so the tree is open-loop: a node stands for a
+ * sequence of decisions rather than one state, and each iteration draws fresh
+ * dice. Decisions that are impossible in a drawn state (e.g. the target died)
+ * are not offered there.
+ *
+ * Searches run on a fork-join pool, one independent tree per worker, until the
+ * time budget is spent; the action visited most over all trees is played. A
+ * controller serves one battle at a time.
+ */
+public class MctsHeroController implements HeroController {
+
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final int MAX_PLAYOUT_ROUNDS = 40;
+    private static final HeroController PLAYOUT_POLICY = new SimpleHeroController();
+
+    private final long budgetNanos;
+    private final int workers;
+    private final ForkJoinPool pool;
+    private final SplittableRandom random;
+    private long lastIterations;
+
+    /** Searches for the given time on every worker of the common pool. */
+    public MctsHeroController(long budgetMillis) {
+        this(budgetMillis, ForkJoinPool.commonPool().getParallelism(), ForkJoinPool.commonPool(),
+                new SplittableRandom().nextLong());
+    }
+
+    public MctsHeroController(long budgetMillis, int workers, ForkJoinPool pool, long seed) {
+        this.budgetNanos = budgetMillis * 1_000_000;
+        this.workers = Math.max(1, workers);
+        this.pool = pool;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /** Playouts run by the last search, over all workers. */
+    public long getLastIterations() {
+        return lastIterations;
+    }
+
+    // ==================== DECISIONS ====================
+
+    /** One hero decision, with the target as an index so it applies to any copy of the battle. */
+    private static final class Move {
+        final HeroAction.Kind kind;
+        final int target;   // monster index, -1 for potions
+        final Item item;    // spell or potion, shared by all copies
+
+        Move(HeroAction.Kind kind, int target, Item item) {
+            this.kind = kind;
+            this.target = target;
+            this.item = item;
+        }
+
+        boolean sameAs(Move other) {
+            return kind == other.kind && target == other.target && item == other.item;
+        }
+
+        HeroAction toAction(BattleEngine battle) {
+            switch (kind) {
+                case ATTACK: return battle.attackAction(target);
+                case CAST_SPELL: return HeroAction.castSpell((Spell) item, battle.getMonsters().get(target));
+                case USE_POTION: return HeroAction.usePotion((Potion) item);
+                default: return HeroAction.skip();
+            }
+        }
+    }
+
+    /** Everything the hero can do: attack or cast an affordable spell on any living monster, or drink a potion. */
+    private static List<Move> legalMoves(Hero hero, List<Monster> monsters) {
+        List<Move> moves = new ArrayList<>();
+        for (int i = 0; i < monsters.size(); i++) {
+            if (monsters.get(i).isDead()) continue;
+            moves.add(new Move(HeroAction.Kind.ATTACK, i, null));
+            for (Spell s : hero.getInventory().ofType(Spell.class)) {
+                if (s.getManaCost() <= hero.getMana()) moves.add(new Move(HeroAction.Kind.CAST_SPELL, i, s));
+            }
+        }
+        if (moves.isEmpty()) return moves; // nothing left to fight
+        for (Potion p : hero.getInventory().ofType(Potion.class)) {
+            moves.add(new Move(HeroAction.Kind.USE_POTION, -1, p));
+        }
+        return moves;
+    }
+
+    @Override
+    public HeroAction chooseAction(Hero hero, BattleEngine battle) {
+        List<Monster> monsters = battle.getMonsters();
+        List<Move> moves = legalMoves(hero, monsters);
+        lastIterations = 0;
+        if (moves.isEmpty()) return HeroAction.skip();
+        if (moves.size() == 1) return moves.get(0).toAction(battle);
+
+        int heroIndex = battle.getHeroes().indexOf(hero);
+        long deadline = System.nanoTime() + budgetNanos;
+        List<Node> roots = new ArrayList<>();
+        if (workers == 1) {
+            // Searched on the caller's thread, e.g. when battles already run in parallel
+            roots.add(new Search(battle, heroIndex, random.split()).run(deadline));
+        } else {
+            List<ForkJoinTask<Node>> searches = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                Search search = new Search(battle, heroIndex, random.split());
+                searches.add(pool.submit(() -> search.run(deadline)));
+            }
+            for (ForkJoinTask<Node> task : searches) roots.add(task.join());
+        }
+
+        // Sum the root visits of every tree per move
+        long[] visits = new long[moves.size()];
+        double[] value = new double[moves.size()];
+        for (Node root : roots) {
+            lastIterations += root.visits;
+            for (Node child : root.children) {
+                for (int m = 0; m < moves.size(); m++) {
+                    if (moves.get(m).sameAs(child.move)) {
+                        visits[m] += child.visits;
+                        value[m] += child.value;
+                    }
+                }
+            }
+        }
+
+        int best = 0;
+        for (int m = 1; m < moves.size(); m++) {
+            if (visits[m] > visits[best]
+                    || (visits[m] == visits[best] && value[m] > value[best])) {
+                best = m;
+            }
+        }
+        return moves.get(best).toAction(battle);
+    }
+
+    // ==================== SEARCH ====================
+
+    private static final class Node {
+        final Move move; // null at the root
+        final List<Node> children = new ArrayList<>();
+        int visits;
+        double value;
+
+        Node(Move move) {
+            this.move = move;
+        }
+    }
+
+    /** One worker's tree. The real battle is only read, while the caller waits. */
+    private static final class Search {
+        private final BattleEngine battle;
+        private final int heroIndex;
+        private final SplittableRandom random;
+        private final int startHeroHp;
+        private final int startMonsterHp;
+        private final List<Node> path = new ArrayList<>();
+
+        Search(BattleEngine battle, int heroIndex, SplittableRandom random) {
+            this.battle = battle;
+            this.heroIndex = heroIndex;
+            this.random = random;
+            this.startHeroHp = Math.max(1, heroHp(battle.getHeroes()));
+            this.startMonsterHp = Math.max(1, monsterHp(battle.getMonsters()));
+        }
+
+        Node run(long deadline) {
+            Node root = new Node(null);
+            do {
+                iterate(root);
+            } while (System.nanoTime() < deadline);
+            return root;
+        }
+
+        /** Plays the battle out once from the hero's turn and backs the score up the path taken. */
+        private void iterate(Node root) {
+            List<Hero> heroes = new ArrayList<>();
+            for (Hero h : battle.getHeroes()) heroes.add(h.copy());
+            List<Monster> monsters = new ArrayList<>();
+            for (Monster m : battle.getMonsters()) monsters.add(m.copy());
+            BattleEngine sim = new BattleEngine(heroes, monsters, new SplittableRandom(random.nextLong()));
+
+            path.clear();
+            path.add(root);
+            Node node = root;
+            boolean inTree = true;
+            int first = heroIndex;
+            int rounds = 0;
+            while (true) {
+                // Same order as the battle loop: the rest of this hero turn, then the monsters
+                for (int i = first; i < heroes.size(); i++) {
+                    Hero h = heroes.get(i);
+                    if (h.isFainted() || h.isDead()) continue;
+                    if (sim.allMonstersDead()) break;
+
+                    HeroAction action;
+                    if (inTree) {
+                        Node child = select(node, legalMoves(h, monsters));
+                        if (child == null) {
+                            action = HeroAction.skip();
+                        } else {
+                            path.add(child);
+                            node = child;
+                            inTree = child.visits > 0; // a new node ends the tree part
+                            action = child.move.toAction(sim);
+                        }
+                    } else {
+                        action = PLAYOUT_POLICY.chooseAction(h, sim);
+                    }
+                    if (!sim.perform(h, action)) sim.skip(h);
+                }
+                if (sim.allMonstersDead()) break;
+                sim.monsterTurn();
+                sim.endOfRoundRegen();
+                if (sim.allHeroesFainted() || ++rounds >= MAX_PLAYOUT_ROUNDS) break;
+                sim.beginRound();
+                first = 0;
+            }
+
+            double score = score(sim);
+            for (Node n : path) {
+                n.visits++;
+                n.value += score;
+            }
+        }
+
+        /**
+         * The child to follow among the moves possible now: a move not tried
+         * yet (picked at random), otherwise the best by UCB1. Null if the hero
+         * can do nothing.
+         */
+        private Node select(Node node, List<Move> moves) {
+            if (moves.isEmpty()) return null;
+
+            List<Move> untried = null;
+            Node best = null;
+            double bestUcb = Double.NEGATIVE_INFINITY;
+            double logVisits = Math.log(Math.max(1, node.visits));
+            for (Move move : moves) {
+                Node child = childFor(node, move);
+                if (child == null) {
+                    if (untried == null) untried = new ArrayList<>();
+                    untried.add(move);
+                } else if (untried == null) {
+                    double ucb = child.value / child.visits
+                            + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                    if (ucb > bestUcb) {
+                        bestUcb = ucb;
+                        best = child;
+                    }
+                }
+            }
+            if (untried != null) {
+                Node child = new Node(untried.get(random.nextInt(untried.size())));
+                node.children.add(child);
+                return child;
+            }
+            return best;
+        }
+
+        private static Node childFor(Node node, Move move) {
+            for (Node child : node.children) {
+                if (child.move.sameAs(move)) return child;
+            }
+            return null;
+        }
+
+        /**
+         * 0..1, higher is better for the heroes: wins score 0.5 to 1 by the HP
+         * the party kept, losses 0 to 0.25 by the damage done, and battles still
+         * running after the playout limit fall in between.
+         */
+        private double score(BattleEngine sim) {
+            double heroShare = Math.min(1.0, (double) heroHp(sim.getHeroes()) / startHeroHp);
+            double monsterShare = Math.min(1.0, (double) monsterHp(sim.getMonsters()) / startMonsterHp);
+            if (sim.allMonstersDead()) return 0.5 + 0.5 * heroShare;
+            if (sim.allHeroesFainted()) return 0.25 * (1 - monsterShare);
+            return 0.25 + 0.25 * (heroShare + 1 - monsterShare);
+        }
+    }
+
+    private static int heroHp(List<Hero> heroes) {
+        int hp = 0;
+        for (Hero h : heroes) {
+            if (!h.isFainted()) hp += h.getHp();
+        }
+        return hp;
+    }
+
+    private static int monsterHp(List<Monster> monsters) {
+        int hp = 0;
+        for (Monster m : monsters) hp += m.getHp();
+        return hp;
+    }
+}
@@ -30,6 +30,9 @@ public abstract class Monster extends Living {
         this.defense = Math.max(0, defense); // Prevent negative defense
     }
 
+    /** Dodge chance as stored, in percent and without the 30% cap. */
+    public int getDodgePercent() { return dodgeChance; }
+
     /**
      * Convert dodge chance from % to actual probability.
      * Example: 25% → 0.25, used for random dodge calculations.
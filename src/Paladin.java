@@ -13,8 +13,6 @@ public class Paladin extends Hero {
 
     @Override
     public Hero copy() {
-        Paladin p = new Paladin(name, level, mana, strength, dexterity, agility, gold, experience);
-        p.hp = this.hp;
-        return p;
+        return copyStateTo(new Paladin(name, level, mana, strength, dexterity, agility, gold, experience));
     }
 }
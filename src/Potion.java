@@ -1,44 +1,78 @@
+import java.util.Locale;
+
+/**
+ * A single-use potion that raises one or more hero attributes by the same amount.
+ * The affected attributes are parsed once, when the potion is loaded, into a bitmask.
+ */
 public class Potion implements Item {
+
+    // Effect bits
+    public static final int HEALTH = 1;
+    public static final int MANA = 1 << 1;
+    public static final int STRENGTH = 1 << 2;
+    public static final int DEXTERITY = 1 << 3;
+    public static final int AGILITY = 1 << 4;
+    public static final int DEFENSE = 1 << 5;
+    public static final int ALL = HEALTH | MANA | STRENGTH | DEXTERITY | AGILITY | DEFENSE;
+
     private final String name;
     private final int cost;
     private final int level;
     private final int amount;
     private final String affectedAttributes; // ex: "Health", "Mana", "Health/Mana/Strength" etc.
+    private final int effects;               // effect bits for affectedAttributes
 
     public Potion(String name, int cost, int level, int amount, String affectedAttributes) {
+        this(name, cost, level, amount, affectedAttributes, parseEffects(affectedAttributes));
+    }
+
+    public Potion(String name, int cost, int level, int amount, String affectedAttributes, int effects) {
         this.name = name;
         this.cost = cost;
         this.level = level;
         this.amount = amount;
         this.affectedAttributes = affectedAttributes;
+        this.effects = effects;
+    }
+
+    /**
+     * Effect bits for a list of attribute names separated by '/', e.g.
+     * "Health/Mana". "All" stands for every attribute. Case is ignored.
+     */
+    public static int parseEffects(String attributes) {
+        int bits = 0;
+        for (String a : attributes.split("/")) {
+            a = a.trim().toLowerCase(Locale.ROOT);
+            switch (a) {
+                case "health": bits |= HEALTH; break;
+                case "mana": bits |= MANA; break;
+                case "strength": bits |= STRENGTH; break;
+                case "dexterity": bits |= DEXTERITY; break;
+                case "agility": bits |= AGILITY; break;
+                case "defense": bits |= DEFENSE; break;
+                case "all": bits |= ALL; break;
+                case "": break;
+                default:
+                    throw new IllegalArgumentException("Unknown potion attribute: " + a);
+            }
+        }
+        return bits;
     }
 
     @Override public String getName() { return name; }
     @Override public int getCost() { return cost; }
     @Override public int getRequiredLevel() { return level; }
+    public int getAmount() { return amount; }
+    public String getAffectedAttributes() { return affectedAttributes; }
+    public int getEffects() { return effects; }
 
     public void applyTo(Hero h) {
-        String[] attrs = affectedAttributes.split("/");
-        for (String a : attrs) {
-            a = a.trim().toLowerCase();
-            switch (a) {
-                case "health":
-                    h.setHp(h.getHp() + amount);
-                    break;
-                case "mana":
-                    h.setMana(h.getMana() + amount);
-                    break;
-                case "strength":
-                    // no setter for strength, but we can hack via reflection or extend.
-                    // For simplicity, we won't change base stats here except HP/MP.
-                    break;
-                case "agility":
-                case "dexterity":
-                case "defense":
-                    // Could be implemented similarly by adding setters to Hero.
-                    break;
-            }
-        }
+        if ((effects & HEALTH) != 0) h.setHp(h.getHp() + amount);
+        if ((effects & MANA) != 0) h.setMana(h.getMana() + amount);
+        if ((effects & STRENGTH) != 0) h.addStrength(amount);
+        if ((effects & DEXTERITY) != 0) h.addDexterity(amount);
+        if ((effects & AGILITY) != 0) h.addAgility(amount);
+        if ((effects & DEFENSE) != 0) h.addDefense(amount);
     }
 
     @Override
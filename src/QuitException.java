@@ -0,0 +1,12 @@
+/**
+ * Ends the current game session: the player quit, lost, or their input ran
+ * out. Thrown through the game's menus and caught by {@link Game#start()}, so
+ * only the affected session ends.
+ */
+public class QuitException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public QuitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streams records out of the game's data files, one line at a time.
+ *
+ * Fields are separated by any run of spaces, tabs or commas, so the same reader
+ * handles the whitespace-aligned *.txt files and the comma/tab-mixed
+ * files/*.csv copies with their stray trailing commas. Blank lines are skipped.
+ *
+ * Lines are tokenized in place in a reusable char buffer: no String is created
+ * per line, only for the text fields a caller actually asks for.
+ */
+public class RecordReader implements Closeable {
+
+    private final Reader in;
+    private char[] buf = new char[8192];
+    private int pos = 0;     // start of unread data in buf
+    private int limit = 0;   // end of valid data in buf
+    private boolean eof = false;
+
+    // Current record: field i is buf[starts[i], ends[i])
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count = 0;
+    private int lineNumber = 0;
+    private int lineStart;
+    private int lineEnd;
+
+    public RecordReader(Reader in) {
+        this.in = in;
+    }
+
+    /** Skips one line (e.g. the header). Returns false at end of input. */
+    public boolean skipLine() throws IOException {
+        return readLine();
+    }
+
+    /** Moves to the next non-blank record. Returns false at end of input. */
+    public boolean next() throws IOException {
+        while (readLine()) {
+            tokenize();
+            if (count > 0) return true;
+        }
+        count = 0;
+        return false;
+    }
+
+    public int size() { return count; }
+    public int lineNumber() { return lineNumber; }
+
+    public String text(int field) {
+        check(field);
+        return new String(buf, starts[field], ends[field] - starts[field]);
+    }
+
+    /** Parses an int field without creating a String. */
+    public int integer(int field) throws IOException {
+        check(field);
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = buf[i] == '-';
+        if (negative || buf[i] == '+') i++;
+        if (i == end) throw malformed(field);
+
+        long value = 0;
+        for (; i < end; i++) {
+            char ch = buf[i];
+            if (ch < '0' || ch > '9') throw malformed(field);
+            value = value * 10 + (ch - '0');
+            if (value > Integer.MAX_VALUE + 1L) throw malformed(field);
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) throw malformed(field);
+        return (int) value;
+    }
+
+    /** Fields from the given one to the end of the record, joined with a separator. */
+    public String join(int from, char separator) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < count; i++) {
+            if (sb.length() > 0) sb.append(separator);
+            sb.append(buf, starts[i], ends[i] - starts[i]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ========= LINE SPLITTING =========
+
+    private boolean readLine() throws IOException {
+        int scanFrom = pos;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    setLine(pos, i);
+                    pos = i + 1;
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos == limit) return false;
+                setLine(pos, limit); // last line without a newline
+                pos = limit;
+                return true;
+            }
+            scanFrom = limit - pos;
+            fill();
+            scanFrom += pos;
+        }
+    }
+
+    private void setLine(int start, int end) {
+        if (end > start && buf[end - 1] == '\r') end--;
+        lineStart = start;
+        lineEnd = end;
+        lineNumber++;
+    }
+
+    /** Moves unread data to the front (growing the buffer for very long lines) and reads more. */
+    private void fill() throws IOException {
+        int unread = limit - pos;
+        if (unread == buf.length) {
+            char[] bigger = new char[buf.length * 2];
+            System.arraycopy(buf, pos, bigger, 0, unread);
+            buf = bigger;
+        } else {
+            System.arraycopy(buf, pos, buf, 0, unread);
+        }
+        pos = 0;
+        limit = unread;
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    private void tokenize() {
+        count = 0;
+        int i = lineStart;
+        while (i < lineEnd) {
+            while (i < lineEnd && isSeparator(buf[i])) i++;
+            if (i == lineEnd) break;
+            int start = i;
+            while (i < lineEnd && !isSeparator(buf[i])) i++;
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = i;
+            count++;
+        }
+    }
+
+    private static boolean isSeparator(char ch) {
+        return ch == ' ' || ch == '\t' || ch == ',';
+    }
+
+    private void check(int field) {
+        if (field >= count) {
+            throw new IndexOutOfBoundsException("Line " + lineNumber + " has only " + count + " fields");
+        }
+    }
+
+    private IOException malformed(int field) {
+        return new IOException("Line " + lineNumber + ": field " + (field + 1)
+                + " is not a number: " + new String(buf, starts[field], ends[field] - starts[field]));
+    }
+}
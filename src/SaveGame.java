@@ -0,0 +1,436 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Saves and restores a game in progress: the map, the game's master seed and
+ * step and battle counts, the party's position and every hero with their
+ * stats, gold, gear and inventory.
+ *
+ * The save file is a journal of records, each one replacing the earlier
+ * record with the same key (the map, the position, the party size or one hero
+ * slot). An autosave encodes the current state, compares every record with the
+ * one last written and appends only those that changed, so saving after a
+ * market visit usually appends a single hero. Once the journal has grown to a
+ * few times the size of the state it holds, it is compacted: the current
+ * state is written to a temporary file that then replaces the journal.
+ *
+ * Each record carries a CRC32 and reading stops at the first torn or damaged
+ * record, so a crash in the middle of an append loses only that append.
+ * Appends are left to the OS to flush; compaction syncs before replacing.
+ */
+public class SaveGame implements Closeable {
+
+    public static final String DEFAULT_FILE = "savegame.bin";
+
+    private static final int MAGIC = 0x4D485356; // "MHSV"
+    private static final int VERSION = 3;
+    private static final int FILE_HEADER = 8;
+
+    // Record keys; a hero's key is HERO plus its slot in the party
+    private static final int MAP = 0;       // rows, cols (-1 for endless), map seed, master seed, steps taken, battles fought
+    private static final int POSITION = 1;  // row, col
+    private static final int PARTY = 2;     // number of heroes
+    private static final int HERO = 3;      // hero state
+    private static final int MAX_KEYS = 256;
+
+    // Record framing: key (1 byte), payload length (4), payload, CRC32 of key, length and payload (4)
+    private static final int FRAME = 9;
+
+    // The journal is compacted once it is this many times the size of the state (and at least 64 KB)
+    private static final int COMPACT_RATIO = 4;
+    private static final int MIN_COMPACT_BYTES = 64 * 1024;
+
+    /** A ByteArrayOutputStream whose bytes can be read without copying. */
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer(int capacity) { super(capacity); }
+        byte[] array() { return buf; }
+    }
+
+    private final Path file;
+    private FileChannel channel; // open for appending; null until the first save
+    private long fileSize;
+
+    // Last payload written for each key
+    private final List<byte[]> written = new ArrayList<>();
+
+    // Encoding scratch space, reused by every save
+    private final Buffer payload = new Buffer(1024);
+    private final DataOutputStream payloadOut = new DataOutputStream(payload);
+    private final Buffer record = new Buffer(128);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final Buffer pending = new Buffer(4096);
+    private final IdentityHashMap<Item, Integer> itemIndex = new IdentityHashMap<>();
+    private final List<Item> items = new ArrayList<>();
+    private final IdentityHashMap<Item, byte[]> itemRecords = new IdentityHashMap<>(); // items never change
+    private final CRC32 crc = new CRC32();
+
+    public SaveGame(String filename) {
+        this.file = Paths.get(filename);
+    }
+
+    public static boolean exists(String filename) {
+        return Files.exists(Paths.get(filename));
+    }
+
+    public static void delete(String filename) throws IOException {
+        Files.deleteIfExists(Paths.get(filename));
+    }
+
+    /** Bytes in the save file, journal included. */
+    public long fileSize() {
+        return fileSize;
+    }
+
+    // ========= SAVING =========
+
+    /**
+     * Saves the game. The first save of a session writes the whole state;
+     * later ones append only what changed since the previous save.
+     */
+    public void save(GameMap map, GameRandom random, int row, int col, List<Hero> party) throws IOException {
+        if (HERO + party.size() > MAX_KEYS) {
+            throw new IllegalArgumentException("Party too large to save: " + party.size());
+        }
+        pending.reset();
+        long stateSize = FILE_HEADER;
+
+        payload.reset();
+        payloadOut.writeInt(map.getRows());
+        payloadOut.writeInt(map.getCols());
+        payloadOut.writeLong(map.getSeed());
+        payloadOut.writeLong(random.getSeed());
+        payloadOut.writeInt(random.getSteps());
+        payloadOut.writeInt(random.getBattles());
+        stateSize += stage(MAP);
+
+        payload.reset();
+        payloadOut.writeInt(row);
+        payloadOut.writeInt(col);
+        stateSize += stage(POSITION);
+
+        payload.reset();
+        payloadOut.writeByte(party.size());
+        stateSize += stage(PARTY);
+
+        for (int i = 0; i < party.size(); i++) {
+            payload.reset();
+            writeHero(party.get(i));
+            stateSize += stage(HERO + i);
+        }
+        while (written.size() > HERO + party.size()) {
+            written.remove(written.size() - 1); // the party record hides these
+        }
+
+        try {
+            if (channel == null || fileSize + pending.size() > Math.max(MIN_COMPACT_BYTES, COMPACT_RATIO * stateSize)) {
+                compact();
+            } else if (pending.size() > 0) {
+                writeFully(channel, pending);
+                fileSize += pending.size();
+            }
+        } catch (IOException e) {
+            // Unknown what reached the disk, so the next save starts over with a full write
+            written.clear();
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Queues the payload as a record if it differs from the last one
+     * written under the key. Returns its framed size.
+     */
+    private int stage(int key) {
+        while (written.size() <= key) written.add(null);
+        byte[] previous = written.get(key);
+        int length = payload.size();
+        if (previous == null || !sameBytes(previous, payload.array(), length)) {
+            written.set(key, payload.toByteArray());
+            frame(pending, key, payload.array(), length);
+        }
+        return FRAME + length;
+    }
+
+    private static boolean sameBytes(byte[] a, byte[] b, int length) {
+        if (a.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    private void frame(Buffer out, int key, byte[] data, int length) {
+        int start = out.size();
+        out.write(key);
+        writeInt(out, length);
+        out.write(data, 0, length);
+        crc.reset();
+        crc.update(out.array(), start, out.size() - start);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(Buffer out, int v) {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+
+    /** Rewrites the file with just the current records, replacing it in one step. */
+    private void compact() throws IOException {
+        Buffer all = new Buffer(4096);
+        writeInt(all, MAGIC);
+        writeInt(all, VERSION);
+        for (int key = 0; key < written.size(); key++) {
+            byte[] data = written.get(key);
+            if (data != null) frame(all, key, data, data.length);
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, all);
+            out.force(true);
+        }
+        close();
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = all.size();
+    }
+
+    private static void writeFully(FileChannel out, Buffer data) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(data.array(), 0, data.size());
+        while (bytes.hasRemaining()) out.write(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Hero state: the hero record, then hp, defense bonus and flags, then the
+     * hero's items once each, with the gear and inventory stacks as indexes.
+     */
+    private void writeHero(Hero h) throws IOException {
+        itemIndex.clear();
+        items.clear();
+        addItem(h.getWeapon());
+        addItem(h.getArmor());
+        for (Item item : h.getInventory()) addItem(item);
+
+        writeRecord(h);
+        payloadOut.writeInt(h.getHp());
+        payloadOut.writeInt(h.getDefenseBonus());
+        payloadOut.writeBoolean(h.isFainted());
+        payloadOut.writeBoolean(h.isUsingTwoHands());
+
+        payloadOut.writeShort(items.size());
+        for (Item item : items) {
+            byte[] bytes = itemRecords.get(item);
+            if (bytes == null) {
+                encode(item);
+                bytes = record.toByteArray();
+                itemRecords.put(item, bytes);
+            }
+            payloadOut.writeShort(bytes.length);
+            payloadOut.write(bytes);
+        }
+        payloadOut.writeShort(indexOf(h.getWeapon()));
+        payloadOut.writeShort(indexOf(h.getArmor()));
+        int stacks = 0;
+        for (Item ignored : h.getInventory()) stacks++;
+        payloadOut.writeShort(stacks);
+        for (Item item : h.getInventory()) {
+            payloadOut.writeShort(indexOf(item));
+            payloadOut.writeInt(h.getInventory().count(item));
+        }
+    }
+
+    private void addItem(Item item) {
+        if (item != null && !itemIndex.containsKey(item)) {
+            if (items.size() == 0xFFFF) throw new IllegalArgumentException("Too many distinct items to save");
+            itemIndex.put(item, items.size());
+            items.add(item);
+        }
+    }
+
+    private int indexOf(Item item) {
+        Integer i = item == null ? null : itemIndex.get(item);
+        return i == null ? -1 : i;
+    }
+
+    private void writeRecord(Object value) throws IOException {
+        encode(value);
+        payloadOut.writeShort(record.size());
+        payloadOut.write(record.array(), 0, record.size());
+    }
+
+    private void encode(Object value) throws IOException {
+        record.reset();
+        CatalogSnapshot.encode(recordOut, value);
+        recordOut.flush();
+    }
+
+    // ========= LOADING =========
+
+    /** A game read back from a save file. */
+    public static class State {
+        private final GameMap map;
+        private final GameRandom random;
+        private final int row;
+        private final int col;
+        private final List<Hero> party;
+
+        private State(GameMap map, GameRandom random, int row, int col, List<Hero> party) {
+            this.map = map;
+            this.random = random;
+            this.row = row;
+            this.col = col;
+            this.party = party;
+        }
+
+        public GameMap getMap() { return map; }
+        /** The game's randomness, continuing with the next battle. */
+        public GameRandom getRandom() { return random; }
+        public int getRow() { return row; }
+        public int getCol() { return col; }
+        public List<Hero> getParty() { return party; }
+    }
+
+    /**
+     * Reads a save file. Items that are still in the catalog come back as the
+     * catalog's own objects, so they stack with items bought later; others
+     * are restored from the save. The catalog may be null.
+     */
+    public static State load(String filename, Catalog catalog) throws IOException {
+        byte[] data = Files.readAllBytes(Paths.get(filename));
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (data.length < FILE_HEADER || in.getInt(0) != MAGIC) {
+            throw new IOException("Not a saved game: " + filename);
+        }
+        int version = in.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Saved game version " + version + ", expected " + VERSION);
+        }
+
+        // Latest payload offset and length per key
+        int[] start = new int[MAX_KEYS];
+        int[] length = new int[MAX_KEYS];
+        Arrays.fill(start, -1);
+        CRC32 crc = new CRC32();
+        int pos = FILE_HEADER;
+        while (pos + FRAME <= data.length) {
+            int key = data[pos] & 0xFF;
+            int len = in.getInt(pos + 1);
+            if (len < 0 || len > data.length - pos - FRAME) break; // torn append
+            crc.reset();
+            crc.update(data, pos, 5 + len);
+            if ((int) crc.getValue() != in.getInt(pos + 5 + len)) break; // damaged from here on
+            start[key] = pos + 5;
+            length[key] = len;
+            pos += FRAME + len;
+        }
+
+        try {
+            if (start[MAP] < 0 || start[POSITION] < 0 || start[PARTY] < 0) {
+                throw new IOException("Saved game is incomplete: " + filename);
+            }
+            int p = start[MAP];
+            GameMap map = new GameMap(in.getInt(p), in.getInt(p + 4), in.getLong(p + 8));
+            GameRandom random = new GameRandom(in.getLong(p + 16), in.getInt(p + 24), in.getInt(p + 28));
+            int row = in.getInt(start[POSITION]);
+            int col = in.getInt(start[POSITION] + 4);
+
+            Map<String, Item> known = catalogItems(catalog);
+            int partySize = data[start[PARTY]] & 0xFF;
+            List<Hero> party = new ArrayList<>();
+            for (int i = 0; i < partySize; i++) {
+                if (start[HERO + i] < 0) throw new IOException("Saved game is missing hero " + (i + 1));
+                in.position(start[HERO + i]);
+                party.add(readHero(in, known));
+            }
+            return new State(map, random, row, col, party);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt saved game: " + e, e);
+        }
+    }
+
+    private static Hero readHero(ByteBuffer in, Map<String, Item> known) {
+        Hero h = (Hero) readRecord(in);
+        h.setHp(in.getInt());
+        h.addDefense(in.getInt());
+        h.setFainted(in.get() != 0);
+        boolean twoHands = in.get() != 0;
+
+        List<Item> items = new ArrayList<>();
+        int itemCount = in.getShort() & 0xFFFF;
+        for (int i = 0; i < itemCount; i++) {
+            Item item = (Item) readRecord(in);
+            Item same = known.get(key(item));
+            items.add(same != null ? same : item);
+        }
+        int weapon = in.getShort();
+        int armor = in.getShort();
+        if (weapon >= 0) h.equipWeapon((Weapon) items.get(weapon));
+        if (armor >= 0) h.equipArmor((Armor) items.get(armor));
+        h.setUsingTwoHands(twoHands);
+
+        int stacks = in.getShort() & 0xFFFF;
+        for (int s = 0; s < stacks; s++) {
+            Item item = items.get(in.getShort() & 0xFFFF);
+            int count = in.getInt();
+            for (int c = 0; c < count; c++) h.getInventory().add(item);
+        }
+        return h;
+    }
+
+    private static Object readRecord(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        Object value = CatalogSnapshot.decode(in, in.position());
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static Map<String, Item> catalogItems(Catalog catalog) {
+        Map<String, Item> known = new HashMap<>();
+        if (catalog == null) return known;
+        List<List<? extends Item>> lists = new ArrayList<>();
+        lists.add(catalog.getWeapons());
+        lists.add(catalog.getArmors());
+        lists.add(catalog.getPotions());
+        lists.add(catalog.getSpells());
+        for (List<? extends Item> list : lists) {
+            for (Item item : list) known.putIfAbsent(key(item), item);
+        }
+        return known;
+    }
+
+    private static String key(Item item) {
+        return item.getClass().getSimpleName() + ':' + item.getName();
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Command latency and throughput of a {@link GameServer}.
+ *
+ * Each session records into its own {@link SessionMetrics}, so sessions never
+ * contend on a shared histogram; only the command count is shared, and that is
+ * a LongAdder. When a session ends its histograms are added into the totals.
+ * {@link #report()} merges the totals with the live sessions on demand.
+ *
+ * Ending a session and reading the merged histograms share one lock, so a
+ * reader never sees a session both in the totals and among the live ones.
+ * Recording never takes it.
+ */
+public class ServerMetrics {
+
+    private static final Command[] COMMANDS = Command.values();
+    private static final int SLOWEST_SESSIONS = 5;
+
+    private final Set<SessionMetrics> live = ConcurrentHashMap.newKeySet();
+    private final LatencyHistogram[] ended = new LatencyHistogram[COMMANDS.length];
+    private final Object closing = new Object(); // guards moving sessions from live into ended
+    private final LongAdder commands = new LongAdder();
+    private final long startedAt = System.nanoTime();
+
+    // Last periodic dump, for the throughput since then (dump thread only)
+    private long lastDumpAt = startedAt;
+    private long lastDumpCommands;
+
+    public ServerMetrics() {
+        for (int i = 0; i < ended.length; i++) {
+            ended[i] = new LatencyHistogram();
+        }
+    }
+
+    // ========= SESSIONS =========
+
+    public SessionMetrics openSession(long id) {
+        SessionMetrics session = new SessionMetrics(id, this);
+        live.add(session);
+        return session;
+    }
+
+    /** Folds a finished session into the totals. */
+    public void closeSession(SessionMetrics session) {
+        synchronized (closing) {
+            for (Command c : COMMANDS) {
+                LatencyHistogram h = session.histogram(c);
+                if (h != null) ended[c.ordinal()].add(h);
+            }
+            live.remove(session);
+        }
+    }
+
+    void countCommand() {
+        commands.increment();
+    }
+
+    // ========= QUERIES =========
+
+    /** Every recorded latency of the command, over ended and live sessions. */
+    public LatencyHistogram histogram(Command command) {
+        LatencyHistogram all = new LatencyHistogram();
+        synchronized (closing) {
+            all.add(ended[command.ordinal()]);
+            for (SessionMetrics s : live) {
+                LatencyHistogram h = s.histogram(command);
+                if (h != null) all.add(h);
+            }
+        }
+        return all;
+    }
+
+    public long commands() {
+        return commands.sum();
+    }
+
+    /** Commands per second since the server started. */
+    public double throughput() {
+        return perSecond(commands.sum(), System.nanoTime() - startedAt);
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos <= 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    /** Latency per command type, throughput and the slowest live sessions. */
+    public String report() {
+        // One snapshot for the whole report, so the per-command rows agree with each other
+        synchronized (closing) {
+            return report(new ArrayList<>(live));
+        }
+    }
+
+    private String report(List<SessionMetrics> sessions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-14s %9s %10s %10s %10s %10s %10s%n",
+                "command", "count", "mean", "p50", "p99", "p99.9", "max"));
+        for (Command c : COMMANDS) {
+            LatencyHistogram h = histogram(c);
+            if (h.count() == 0) continue;
+            sb.append(String.format(Locale.ROOT, "%-14s %9d %10s %10s %10s %10s %10s%n",
+                    c.name().toLowerCase(Locale.ROOT), h.count(), micros((long) h.mean()),
+                    micros(h.percentile(50)), micros(h.percentile(99)),
+                    micros(h.percentile(99.9)), micros(h.max())));
+        }
+
+        List<long[]> slowest = new ArrayList<>(); // {id, p99, count}
+        for (SessionMetrics s : sessions) {
+            LatencyHistogram h = s.allCommands();
+            if (h.count() > 0) slowest.add(new long[]{s.getId(), h.percentile(99), h.count()});
+        }
+        slowest.sort((a, b) -> Long.compare(b[1], a[1]));
+        sb.append(String.format(Locale.ROOT, "%d live sessions", sessions.size()));
+        if (!slowest.isEmpty()) sb.append(", slowest by p99:");
+        sb.append(System.lineSeparator());
+        for (int i = 0; i < Math.min(SLOWEST_SESSIONS, slowest.size()); i++) {
+            long[] s = slowest.get(i);
+            sb.append(String.format(Locale.ROOT, "  session-%d  p99 %s over %d commands%n",
+                    s[0], micros(s[1]), s[2]));
+        }
+
+        sb.append(String.format(Locale.ROOT, "%d commands, %.1f/s since start",
+                commands.sum(), throughput()));
+        return sb.toString();
+    }
+
+    private static String micros(long us) {
+        if (us < 1000) return us + "us";
+        if (us < 1000_000) return String.format(Locale.ROOT, "%.2fms", us / 1000.0);
+        return String.format(Locale.ROOT, "%.2fs", us / 1e6);
+    }
+
+    // ========= PERIODIC DUMP =========
+
+    /**
+     * Prints the report every given number of seconds, with the throughput of
+     * the last interval, on a daemon thread. Returns the scheduler so the
+     * caller can stop it.
+     */
+    public ScheduledExecutorService dumpEvery(int seconds, GameIO out) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(() -> dump(out), seconds, seconds, TimeUnit.SECONDS);
+        return scheduler;
+    }
+
+    private void dump(GameIO out) {
+        long now = System.nanoTime();
+        long total = commands.sum();
+        double recent = perSecond(total - lastDumpCommands, now - lastDumpAt);
+        lastDumpAt = now;
+        lastDumpCommands = total;
+
+        String report = report();
+        synchronized (out) {
+            out.println("==================== SERVER STATS ====================");
+            out.println(report);
+            out.println(String.format(Locale.ROOT, "%.1f commands/s over the last interval", recent));
+            out.flush();
+        }
+    }
+}
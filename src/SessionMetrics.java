@@ -0,0 +1,49 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Command latencies of one session, a histogram per {@link Command}, created
+ * on the command's first use. Recorded by the session's thread through its
+ * {@link GameIO}; read by {@link ServerMetrics} for reports.
+ */
+public class SessionMetrics {
+
+    private static final Command[] COMMANDS = Command.values();
+
+    private final long id;
+    private final ServerMetrics server;
+    private final AtomicReferenceArray<LatencyHistogram> byCommand =
+            new AtomicReferenceArray<>(COMMANDS.length);
+
+    SessionMetrics(long id, ServerMetrics server) {
+        this.id = id;
+        this.server = server;
+    }
+
+    public long getId() { return id; }
+
+    /** Records how long a command took, from reading its input to flushing its output. */
+    public void record(Command command, long nanos) {
+        LatencyHistogram h = byCommand.get(command.ordinal());
+        if (h == null) {
+            h = new LatencyHistogram();
+            byCommand.lazySet(command.ordinal(), h);
+        }
+        h.record(nanos / 1000);
+        server.countCommand();
+    }
+
+    /** This session's histogram for the command, or null if it never ran. */
+    public LatencyHistogram histogram(Command command) {
+        return byCommand.get(command.ordinal());
+    }
+
+    /** Every command of this session in one histogram. */
+    public LatencyHistogram allCommands() {
+        LatencyHistogram all = new LatencyHistogram();
+        for (Command c : COMMANDS) {
+            LatencyHistogram h = byCommand.get(c.ordinal());
+            if (h != null) all.add(h);
+        }
+        return all;
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.List;
+
+/**
+ * Straightforward automatic player used for headless battles:
+ *  - drink a potion when HP drops below a quarter of max HP
+ *  - otherwise cast the strongest affordable spell
+ *  - otherwise attack with the equipped weapon
+ * Always targets the living monster with the lowest HP.
+ */
+public class SimpleHeroController implements HeroController {
+
+    @Override
+    public HeroAction chooseAction(Hero hero, BattleEngine battle) {
+        int target = weakestMonster(battle);
+        if (target < 0) return HeroAction.skip();
+
+        if (hero.getHp() < hero.getLevel() * 25) {
+            Potion potion = hero.getInventory().first(Potion.class);
+            if (potion != null) return HeroAction.usePotion(potion);
+        }
+
+        Spell best = null;
+        Inventory inventory = hero.getInventory();
+        for (Spell s = inventory.first(Spell.class); s != null; s = inventory.next(Spell.class, s)) {
+            if (s.getManaCost() > hero.getMana()) continue;
+            if (best == null || s.getDamage() > best.getDamage()) best = s;
+        }
+        if (best != null) return HeroAction.castSpell(best, battle.getMonsters().get(target));
+
+        return battle.attackAction(target);
+    }
+
+    /** Index of the living monster with the lowest HP, or -1 if all are dead. */
+    private int weakestMonster(BattleEngine battle) {
+        List<Monster> monsters = battle.getMonsters();
+        int weakest = -1;
+        for (int i = 0; i < monsters.size(); i++) {
+            Monster m = monsters.get(i);
+            if (m.isDead()) continue;
+            if (weakest < 0 || m.getHp() < monsters.get(weakest).getHp()) weakest = i;
+        }
+        return weakest;
+    }
+}
@@ -13,8 +13,6 @@ public class Sorcerer extends Hero {
 
     @Override
     public Hero copy() {
-        Sorcerer s = new Sorcerer(name, level, mana, strength, dexterity, agility, gold, experience);
-        s.hp = this.hp;
-        return s;
+        return copyStateTo(new Sorcerer(name, level, mana, strength, dexterity, agility, gold, experience));
     }
 }
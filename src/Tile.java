@@ -1,10 +1,23 @@
 public class Tile {
+    // One shared instance per type; maps store tile types, not Tile objects
+    private static final Tile[] BY_TYPE = new Tile[TileType.values().length];
+
+    static {
+        for (TileType type : TileType.values()) {
+            BY_TYPE[type.ordinal()] = new Tile(type);
+        }
+    }
+
     private final TileType type;
 
-    public Tile(TileType type) {
+    private Tile(TileType type) {
         this.type = type;
     }
 
+    public static Tile of(TileType type) {
+        return BY_TYPE[type.ordinal()];
+    }
+
     public TileType getType() {
         return type;
     }
@@ -13,8 +13,6 @@ public class Warrior extends Hero {
 
     @Override
     public Hero copy() {
-        Warrior w = new Warrior(name, level, mana, strength, dexterity, agility, gold, experience);
-        w.hp = this.hp;
-        return w;
+        return copyStateTo(new Warrior(name, level, mana, strength, dexterity, agility, gold, experience));
     }
 }